@@ -4,16 +4,23 @@ import com.skrepta.skreptajava.admin.dto.UserRoleUpdateRequest;
 import com.skrepta.skreptajava.admin.dto.UserUpdateRequest;
 import com.skrepta.skreptajava.admin.service.AdminService;
 import com.skrepta.skreptajava.auth.dto.UserResponse;
+import com.skrepta.skreptajava.config.FileStorageService;
+import com.skrepta.skreptajava.item.dto.CursorPage;
+import com.skrepta.skreptajava.shop.dto.ShopListResponse;
 import com.skrepta.skreptajava.shop.dto.ShopResponse;
 import com.skrepta.skreptajava.shop.service.ShopService;
 	import com.skrepta.skreptajava.item.service.ItemService;
+import com.skrepta.skreptajava.storage.service.ImageRenditionService;
+import com.skrepta.skreptajava.storage.service.StorageDeletionService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/admin")
@@ -24,6 +31,9 @@ public class AdminController {
     private final AdminService adminService;
     private final ShopService shopService;
 	    private final ItemService itemService;
+    private final StorageDeletionService storageDeletionService;
+    private final ImageRenditionService imageRenditionService;
+    private final FileStorageService fileStorageService;
 
     // === Управление пользователями ===
     
@@ -61,11 +71,55 @@ public class AdminController {
         return ResponseEntity.ok(shopService.getAllShops());
     }
 
+    // Модерация постранично: approved=false - заявки, true - одобренные, без параметра - все
+    @GetMapping("/shops/page")
+    public ResponseEntity<CursorPage<ShopListResponse>> getShopsPage(
+            @RequestParam(required = false) Boolean approved,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size
+    ) {
+        return ResponseEntity.ok(shopService.getShopsPage(approved, cursor, size));
+    }
+
     @GetMapping("/shops/pending")
     public ResponseEntity<List<ShopResponse>> getPendingShops() {
         return ResponseEntity.ok(shopService.getPendingShops());
     }
 
+    @GetMapping("/shops/cache-stats")
+    public ResponseEntity<Map<String, Object>> getShopCacheStats() {
+        var stats = shopService.getCacheStats();
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("cache_size", shopService.getCacheSize());
+        response.put("hit_rate", String.format("%.2f%%", stats.hitRate() * 100));
+        response.put("hit_count", stats.hitCount());
+        response.put("miss_count", stats.missCount());
+        response.put("eviction_count", stats.evictionCount());
+        return ResponseEntity.ok(response);
+    }
+
+    // === Хранилище файлов ===
+
+    @GetMapping("/storage/stats")
+    public ResponseEntity<Map<String, Object>> getStorageStats() {
+        Map<String, Object> response = new HashMap<>(fileStorageService.getStats());
+        response.put("pending_deletions", storageDeletionService.getPendingCount());
+        return ResponseEntity.ok(response);
+    }
+
+    @PostMapping("/storage/sweep")
+    public ResponseEntity<Void> sweepOrphanFiles() {
+        storageDeletionService.sweepOrphans();
+        return ResponseEntity.noContent().build();
+    }
+
+    // Очередь обработки картинок и время по этапам
+    @GetMapping("/images/pipeline-stats")
+    public ResponseEntity<Map<String, Object>> getImagePipelineStats() {
+        return ResponseEntity.ok(imageRenditionService.getStats());
+    }
+
     @PutMapping("/shops/{shopId}/approve")
     public ResponseEntity<ShopResponse> approveShop(@PathVariable Long shopId) {
         return ResponseEntity.ok(shopService.approveShop(shopId));
@@ -2,11 +2,13 @@ package com.skrepta.skreptajava.admin.service;
 
 import com.skrepta.skreptajava.auth.dto.UserResponse;
 import com.skrepta.skreptajava.auth.entity.User;
+import com.skrepta.skreptajava.auth.event.UserTokensRevokedEvent;
 import com.skrepta.skreptajava.auth.exception.ResourceNotFoundException;
 import com.skrepta.skreptajava.auth.repository.UserRepository;
 	import com.skrepta.skreptajava.shop.service.ShopService;
 	import com.skrepta.skreptajava.item.service.ItemService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -20,6 +22,7 @@ public class AdminService {
     private final UserRepository userRepository;
 	    private final ShopService shopService;
 	    private final ItemService itemService;
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * Retrieves all users and maps them to UserResponse DTOs.
@@ -42,6 +45,10 @@ public class AdminService {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found with ID: " + userId));
 
+        if (user.getRole() != newRole) {
+            user.revokeTokens();
+            eventPublisher.publishEvent(new UserTokensRevokedEvent(user.getId()));
+        }
         user.setRole(newRole);
         userRepository.save(user);
 
@@ -64,6 +71,12 @@ public class AdminService {
             throw new com.skrepta.skreptajava.auth.exception.UserAlreadyExistsException("User with email " + request.getEmail() + " already exists.");
         }
 
+        // Роль и email зашиты в токен - выданные токены отзываем
+        if (user.getRole() != request.getRole() || !user.getEmail().equals(request.getEmail())) {
+            user.revokeTokens();
+            eventPublisher.publishEvent(new UserTokensRevokedEvent(user.getId()));
+        }
+
         user.setEmail(request.getEmail());
         user.setFio(request.getFio());
         user.setPhoneNumber(request.getPhoneNumber());
@@ -89,6 +102,7 @@ public class AdminService {
 // TODO: Добавить логику для удаления связанных данных (магазины, товары и т.д.)
 	        // Временно просто удаляем пользователя.
 	        userRepository.delete(user);
+	        eventPublisher.publishEvent(new UserTokensRevokedEvent(userId));
 	    }
 	
 	    /**
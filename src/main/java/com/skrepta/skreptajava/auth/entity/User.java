@@ -62,6 +62,10 @@ public class User implements UserDetails {
 
     private Instant resetPasswordTokenExpiry;
 
+    // Растёт при смене пароля и роли: все выданные ранее токены перестают проходить проверку
+    @Column(name = "token_version", nullable = false, columnDefinition = "integer default 0")
+    private int tokenVersion;
+
     @Column(nullable = false)
     private Instant createdAt;
 
@@ -82,6 +86,10 @@ public class User implements UserDetails {
         this.favoriteShops = favoriteShops;
     }
 
+    public void revokeTokens() {
+        tokenVersion++;
+    }
+
     // --- UserDetails methods ---
 
     @Override
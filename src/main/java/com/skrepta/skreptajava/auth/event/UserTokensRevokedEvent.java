@@ -0,0 +1,8 @@
+package com.skrepta.skreptajava.auth.event;
+
+/**
+ * Выданные пользователю токены отозваны (смена пароля, роли, удаление).
+ * Публикуется внутри транзакции, слушатели реагируют после коммита.
+ */
+public record UserTokensRevokedEvent(Long userId) {
+}
@@ -0,0 +1,7 @@
+package com.skrepta.skreptajava.auth.exception;
+
+public class DirectUploadNotSupportedException extends RuntimeException {
+    public DirectUploadNotSupportedException(String message) {
+        super(message);
+    }
+}
@@ -2,6 +2,8 @@ package com.skrepta.skreptajava.auth.repository;
 
 import com.skrepta.skreptajava.auth.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -31,4 +33,16 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByResetPasswordToken(String token);
 
     Optional<User> findByEmailIgnoreCase(String email);
+
+    /**
+     * Finds only the ID of a user by email, without loading the entity and its collections.
+     * @param email the email address of the user
+     * @return an Optional containing the user ID if found, or empty otherwise
+     */
+    @Query("SELECT u.id FROM User u WHERE u.email = :email")
+    Optional<Long> findIdByEmail(@Param("email") String email);
+
+    // Версия токенов пользователя: проверка JWT без загрузки всей сущности
+    @Query("SELECT u.tokenVersion FROM User u WHERE u.id = :id")
+    Optional<Integer> findTokenVersionById(@Param("id") Long id);
 }
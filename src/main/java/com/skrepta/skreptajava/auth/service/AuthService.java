@@ -7,6 +7,7 @@ import com.skrepta.skreptajava.auth.dto.ForgotPasswordRequest;
 import com.skrepta.skreptajava.auth.dto.ResetPasswordRequest;
 import com.skrepta.skreptajava.auth.dto.UserResponse;
 import com.skrepta.skreptajava.auth.entity.User;
+import com.skrepta.skreptajava.auth.event.UserTokensRevokedEvent;
 import com.skrepta.skreptajava.auth.exception.InvalidCredentialsException;
 import com.skrepta.skreptajava.auth.exception.ResourceNotFoundException;
 import com.skrepta.skreptajava.auth.exception.UserAlreadyExistsException;
@@ -14,7 +15,9 @@ import com.skrepta.skreptajava.auth.repository.UserRepository;
 import com.skrepta.skreptajava.shop.repository.ShopRepository;
 import com.skrepta.skreptajava.shop.entity.Shop;
 import com.skrepta.skreptajava.config.FileStorageService;
+import io.jsonwebtoken.Claims;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.AuthenticationException;
@@ -37,6 +40,7 @@ public class AuthService {
     private final JwtService jwtService;
     private final AuthenticationManager authenticationManager;
     private final EmailService emailService;
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * Registers a new user.
@@ -151,7 +155,10 @@ public class AuthService {
         user.setPassword(passwordEncoder.encode(request.getNewPassword()));
         user.setResetPasswordToken(null);
         user.setResetPasswordTokenExpiry(null);
+        // Старые токены (в том числе у того, кто мог узнать прежний пароль) больше не действуют
+        user.revokeTokens();
         userRepository.save(user);
+        eventPublisher.publishEvent(new UserTokensRevokedEvent(user.getId()));
     }
 
     /**
@@ -160,13 +167,14 @@ public class AuthService {
      * @return a new AuthResponse with a new access token and the same refresh token
      */
     public AuthResponse refreshToken(String refreshToken) {
-        final String userEmail = jwtService.extractUsername(refreshToken);
+        final Claims claims = jwtService.parseClaims(refreshToken);
+        final String userEmail = claims.getSubject();
 
         if (userEmail != null) {
             User user = userRepository.findByEmail(userEmail)
                     .orElseThrow(() -> new ResourceNotFoundException("User not found"));
 
-            if (jwtService.isTokenValid(refreshToken, user)) {
+            if (jwtService.isTokenValid(claims, user)) {
                 String newAccessToken = jwtService.generateToken(user);
                 return AuthResponse.builder()
                         .accessToken(newAccessToken)
@@ -237,6 +245,7 @@ public class AuthService {
 
         // 4. Удаляем пользователя
         userRepository.delete(user);
+        eventPublisher.publishEvent(new UserTokensRevokedEvent(user.getId()));
     }
 
     private UserResponse mapToUserResponse(User user) {
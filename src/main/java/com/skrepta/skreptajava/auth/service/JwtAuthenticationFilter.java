@@ -1,10 +1,12 @@
 package com.skrepta.skreptajava.auth.service;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -21,6 +23,11 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
     private final UserDetailsServiceImpl userDetailsService;
+    private final TokenVersionService tokenVersionService;
+
+    // Проверка токена без запроса пользователя из БД (см. authenticateFromClaims)
+    @Value("${jwt.stateless:false}")
+    private boolean stateless;
 
     @Override
     protected void doFilterInternal(
@@ -44,7 +51,6 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         final String authHeader = request.getHeader("Authorization");
         final String jwt;
-        final String userEmail;
 
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
             filterChain.doFilter(request, response);
@@ -52,30 +58,74 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
 
         jwt = authHeader.substring(7);
-        try {
-            userEmail = jwtService.extractUsername(jwt);
-        } catch (Exception e) {
-            filterChain.doFilter(request, response);
-            return;
-        }
 
-        if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(userEmail);
-
-            if (jwtService.isTokenValid(jwt, userDetails)) {
-                UsernamePasswordAuthenticationToken authToken =
-                        new UsernamePasswordAuthenticationToken(
-                                userDetails,
-                                null,
-                                userDetails.getAuthorities()
-                        );
-                authToken.setDetails(
-                        new WebAuthenticationDetailsSource().buildDetails(request)
-                );
-                SecurityContextHolder.getContext().setAuthentication(authToken);
+        if (SecurityContextHolder.getContext().getAuthentication() == null) {
+            // Подпись и срок проверяются один раз; дальше работаем с готовыми claims
+            Claims claims;
+            try {
+                claims = jwtService.parseClaims(jwt);
+            } catch (Exception e) {
+                filterChain.doFilter(request, response);
+                return;
+            }
+
+            if (stateless) {
+                authenticateFromClaims(claims, request);
+            } else {
+                authenticateFromDatabase(claims, request);
             }
         }
 
         filterChain.doFilter(request, response);
     }
+
+    /**
+     * Режим jwt.stateless: пользователь собирается из проверенных claims,
+     * в БД (через кэш) смотрим только версию токенов. Токены без uid/ver
+     * (выданные до появления режима) проверяются по-старому.
+     */
+    private void authenticateFromClaims(Claims claims, HttpServletRequest request) {
+        Long userId = claims.get(JwtService.CLAIM_USER_ID, Long.class);
+        Integer version = claims.get(JwtService.CLAIM_TOKEN_VERSION, Integer.class);
+        String role = claims.get(JwtService.CLAIM_ROLE, String.class);
+        if (userId == null || version == null || role == null || claims.getSubject() == null) {
+            authenticateFromDatabase(claims, request);
+            return;
+        }
+        if (!tokenVersionService.isCurrent(userId, version)) {
+            return;
+        }
+
+        UserDetails principal = org.springframework.security.core.userdetails.User
+                .withUsername(claims.getSubject())
+                .password("")
+                .authorities(role)
+                .build();
+        setAuthentication(principal, request);
+    }
+
+    private void authenticateFromDatabase(Claims claims, HttpServletRequest request) {
+        String userEmail = claims.getSubject();
+        if (userEmail == null) {
+            return;
+        }
+
+        UserDetails userDetails = this.userDetailsService.loadUserByUsername(userEmail);
+        if (jwtService.isTokenValid(claims, userDetails)) {
+            setAuthentication(userDetails, request);
+        }
+    }
+
+    private void setAuthentication(UserDetails userDetails, HttpServletRequest request) {
+        UsernamePasswordAuthenticationToken authToken =
+                new UsernamePasswordAuthenticationToken(
+                        userDetails,
+                        null,
+                        userDetails.getAuthorities()
+                );
+        authToken.setDetails(
+                new WebAuthenticationDetailsSource().buildDetails(request)
+        );
+        SecurityContextHolder.getContext().setAuthentication(authToken);
+    }
 }
\ No newline at end of file
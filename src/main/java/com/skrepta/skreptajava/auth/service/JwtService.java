@@ -1,14 +1,17 @@
 package com.skrepta.skreptajava.auth.service;
 
+import com.skrepta.skreptajava.auth.entity.User;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
-import java.security.Key;
+import javax.crypto.SecretKey;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
@@ -17,6 +20,10 @@ import java.util.function.Function;
 @Service
 public class JwtService {
 
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_ROLE = "role";
+    public static final String CLAIM_TOKEN_VERSION = "ver";
+
     @Value("${jwt.secret}")
     private String secretKey;
 
@@ -26,6 +33,18 @@ public class JwtService {
     @Value("${jwt.refresh.expiration}")
     private long refreshExpiration;
 
+    // Ключ и парсер создаются один раз: JwtParser потокобезопасен
+    private SecretKey signingKey;
+    private JwtParser parser;
+
+    @PostConstruct
+    private void init() {
+        this.signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secretKey));
+        this.parser = Jwts.parser()
+                .verifyWith(signingKey)
+                .build();
+    }
+
     /**
      * Extracts the username (email) from the JWT token.
      * @param token the JWT token
@@ -76,14 +95,19 @@ public class JwtService {
             long expiration
     ) {
         // Add role to claims
-        extraClaims.put("role", userDetails.getAuthorities().stream().findFirst().orElse(null).getAuthority());
+        extraClaims.put(CLAIM_ROLE, userDetails.getAuthorities().stream().findFirst().orElse(null).getAuthority());
+        // ID и версия токенов - чтобы проверять токен без загрузки пользователя (jwt.stateless)
+        if (userDetails instanceof User user) {
+            extraClaims.put(CLAIM_USER_ID, user.getId());
+            extraClaims.put(CLAIM_TOKEN_VERSION, user.getTokenVersion());
+        }
 
         return Jwts.builder()
                 .claims(extraClaims)
                 .subject(userDetails.getUsername())
                 .issuedAt(new Date(System.currentTimeMillis()))
                 .expiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSignInKey())
+                .signWith(signingKey)
                 .compact();
     }
 
@@ -91,40 +115,48 @@ public class JwtService {
      * Checks if the token is valid for the given UserDetails.
      */
     public boolean isTokenValid(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername())) && !isTokenExpired(token);
+        return isTokenValid(extractAllClaims(token), userDetails);
     }
 
     /**
-     * Checks if the token has expired.
+     * То же по уже разобранным claims (см. parseClaims) - без повторной проверки подписи.
      */
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    public boolean isTokenValid(Claims claims, UserDetails userDetails) {
+        return userDetails.getUsername().equals(claims.getSubject()) && !isTokenExpired(claims)
+                && hasCurrentVersion(claims, userDetails);
     }
 
     /**
-     * Extracts the expiration date from the token.
+     * Токен не отозван: версия в нём совпадает с текущей версией пользователя.
+     * У токенов, выданных до появления версий, claim нет - они считаются версией 0.
      */
-    private Date extractExpiration(String token) {
-        return extractAllClaims(token).getExpiration();
+    private boolean hasCurrentVersion(Claims claims, UserDetails userDetails) {
+        if (!(userDetails instanceof User user)) {
+            return true;
+        }
+        Integer version = claims.get(CLAIM_TOKEN_VERSION, Integer.class);
+        return (version != null ? version : 0) == user.getTokenVersion();
     }
 
     /**
-     * Extracts all claims from the token.
+     * Проверяет подпись и срок действия и возвращает все claims.
+     * @throws io.jsonwebtoken.JwtException если токен недействителен
      */
-    private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .setSigningKey(getSignInKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    public Claims parseClaims(String token) {
+        return extractAllClaims(token);
     }
 
     /**
-     * Gets the signing key from the secret.
+     * Checks if the token has expired.
      */
-    private Key getSignInKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(secretKey);
-        return Keys.hmacShaKeyFor(keyBytes);
+    private boolean isTokenExpired(Claims claims) {
+        return claims.getExpiration().before(new Date());
+    }
+
+    /**
+     * Extracts all claims from the token.
+     */
+    private Claims extractAllClaims(String token) {
+        return parser.parseSignedClaims(token).getPayload();
     }
 }
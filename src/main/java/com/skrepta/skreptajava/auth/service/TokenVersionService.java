@@ -0,0 +1,53 @@
+package com.skrepta.skreptajava.auth.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.skrepta.skreptajava.auth.event.UserTokensRevokedEvent;
+import com.skrepta.skreptajava.auth.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Проверка версии токена (claim ver) против users.token_version.
+ * Версии кэшируются на короткое время: отзыв на этом экземпляре действует сразу
+ * после коммита, на остальных - не позже чем через jwt.version-cache-ttl.
+ */
+@Service
+@RequiredArgsConstructor
+public class TokenVersionService {
+
+    private final UserRepository userRepository;
+
+    @Value("${jwt.version-cache-ttl:30s}")
+    private Duration cacheTtl;
+
+    // Пустое значение - пользователь удалён
+    private Cache<Long, Optional<Integer>> versions;
+
+    @PostConstruct
+    private void init() {
+        versions = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(cacheTtl)
+                .build();
+    }
+
+    public boolean isCurrent(Long userId, int tokenVersion) {
+        return versions.get(userId, userRepository::findTokenVersionById)
+                .map(version -> version == tokenVersion)
+                .orElse(false);
+    }
+
+    // fallbackExecution: событие вне транзакции обрабатывается сразу
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onTokensRevoked(UserTokensRevokedEvent event) {
+        versions.invalidate(event.userId());
+    }
+}
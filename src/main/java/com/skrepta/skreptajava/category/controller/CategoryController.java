@@ -4,12 +4,15 @@ import com.skrepta.skreptajava.category.dto.CategoryRequest;
 import com.skrepta.skreptajava.category.dto.CategoryResponse;
 import com.skrepta.skreptajava.category.dto.CategoryStatusRequest;
 import com.skrepta.skreptajava.category.service.CategoryService;
+import com.skrepta.skreptajava.category.service.CategoryTreeCache;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.util.List;
@@ -21,10 +24,18 @@ public class CategoryController {
 
     private final CategoryService categoryService;
 
-    // Public endpoint: Get all categories (for all users)
+    // Public endpoint: Get all categories (for all users).
+    // Дерево отдаётся из кэша с ETag; если у клиента та же версия - 304 без тела
     @GetMapping
-    public ResponseEntity<List<CategoryResponse>> getAllCategories() {
-        return ResponseEntity.ok(categoryService.getAllRootCategories());
+    public ResponseEntity<List<CategoryResponse>> getAllCategories(WebRequest webRequest) {
+        CategoryTreeCache.Snapshot tree = categoryService.getCategoryTree();
+        if (webRequest.checkNotModified(tree.etag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(tree.etag()).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(tree.etag())
+                .cacheControl(CacheControl.noCache())
+                .body(tree.roots());
     }
 
     // Admin endpoint: Create a new category
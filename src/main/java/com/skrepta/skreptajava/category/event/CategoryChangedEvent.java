@@ -0,0 +1,8 @@
+package com.skrepta.skreptajava.category.event;
+
+/**
+ * Категория создана, изменена или удалена.
+ * Публикуется внутри транзакции, слушатели реагируют после коммита.
+ */
+public record CategoryChangedEvent(Long categoryId) {
+}
@@ -0,0 +1,14 @@
+package com.skrepta.skreptajava.category.repository;
+
+/**
+ * Плоская строка категории без связей - для сборки дерева в памяти
+ */
+public interface CategoryFlatView {
+    Long getId();
+    String getName();
+    String getSlug();
+    Long getParentId();
+    String getIcon();
+    Integer getPosition();
+    Boolean getIsActive();
+}
@@ -2,12 +2,23 @@ package com.skrepta.skreptajava.category.repository;
 
 import com.skrepta.skreptajava.category.entity.Category;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface CategoryRepository extends JpaRepository<Category, Long> {
     Optional<Category> findByName(String name);
     Optional<Category> findBySlug(String slug);
+
+    // Все категории одним запросом, без загрузки parent/children
+    @Query("""
+            SELECT c.id AS id, c.name AS name, c.slug AS slug, c.parent.id AS parentId,
+                   c.icon AS icon, c.position AS position, c.isActive AS isActive
+            FROM Category c
+            ORDER BY c.position, c.id
+            """)
+    List<CategoryFlatView> findAllFlat();
 }
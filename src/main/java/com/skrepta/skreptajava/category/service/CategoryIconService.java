@@ -1,16 +1,14 @@
 package com.skrepta.skreptajava.category.service;
 
-import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.model.CannedAccessControlList;
-import com.amazonaws.services.s3.model.ObjectMetadata;
-import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.skrepta.skreptajava.storage.service.ObjectStorage;
+import com.skrepta.skreptajava.storage.service.StorageDeletionService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
@@ -20,17 +18,15 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class CategoryIconService {
 
-    private final AmazonS3 s3client;
-
-    @Value("${ps.bucket-name}")
-    private String bucketName;
+    private final ObjectStorage objectStorage;
+    private final StorageDeletionService storageDeletionService;
 
     private static final List<String> ALLOWED_EXTENSIONS = Arrays.asList(".png", ".jpg", ".jpeg", ".webp", ".svg");
     private static final long MAX_FILE_SIZE = 5 * 1024 * 1024; // 5MB
-    private static final String ICONS_FOLDER = "categories/icons/";
+    public static final String ICONS_FOLDER = "categories/icons/";
 
     /**
-     * Загружает иконку категории в S3
+     * Загружает иконку категории в хранилище
      * @param file файл для загрузки
      * @param categoryId ID категории
      * @return публичный URL загруженного файла
@@ -41,23 +37,19 @@ public class CategoryIconService {
         String fileExtension = getFileExtension(file.getOriginalFilename());
         String uniqueFileName = ICONS_FOLDER + "category_" + categoryId + "_" + UUID.randomUUID().toString() + fileExtension;
 
-        ObjectMetadata metadata = new ObjectMetadata();
-        metadata.setContentLength(file.getSize());
-        metadata.setContentType(file.getContentType());
-
-        PutObjectRequest request = new PutObjectRequest(bucketName, uniqueFileName, file.getInputStream(), metadata)
-                .withCannedAcl(CannedAccessControlList.PublicRead);
-
-        s3client.putObject(request);
+        try (InputStream content = file.getInputStream()) {
+            objectStorage.put(uniqueFileName, content, file.getSize(), file.getContentType(), null);
+        }
 
-        String fileUrl = s3client.getUrl(bucketName, uniqueFileName).toString();
+        String fileUrl = objectStorage.url(uniqueFileName);
         log.info("Category icon uploaded successfully: {}", fileUrl);
 
         return fileUrl;
     }
 
     /**
-     * Удаляет иконку категории из S3
+     * Ставит иконку категории в очередь на удаление из S3
+     * (удалится в фоне после коммита текущей транзакции)
      * @param fileUrl полный URL файла
      */
     public void deleteCategoryIcon(String fileUrl) {
@@ -65,17 +57,16 @@ public class CategoryIconService {
             return;
         }
 
-        try {
-            String fileName = fileUrl.substring(fileUrl.lastIndexOf("/") + 1);
-            // Добавляем папку обратно
-            String key = ICONS_FOLDER + fileName;
-            
-            s3client.deleteObject(bucketName, key);
-            log.info("Category icon deleted successfully: {}", key);
-        } catch (Exception e) {
-            log.error("Error deleting category icon from S3: {}", e.getMessage());
-            throw new RuntimeException("Failed to delete category icon from S3", e);
-        }
+        String key = iconKey(fileUrl);
+        storageDeletionService.enqueue(List.of(key));
+        log.info("Category icon queued for deletion: {}", key);
+    }
+
+    /**
+     * Ключ объекта по URL иконки: имя файла + папка иконок
+     */
+    public static String iconKey(String fileUrl) {
+        return ICONS_FOLDER + fileUrl.substring(fileUrl.lastIndexOf("/") + 1);
     }
 
     private void validateFile(MultipartFile file) {
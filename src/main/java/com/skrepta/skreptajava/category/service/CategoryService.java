@@ -5,11 +5,15 @@ import com.skrepta.skreptajava.category.dto.CategoryRequest;
 import com.skrepta.skreptajava.category.dto.CategoryResponse;
 import com.skrepta.skreptajava.category.dto.CategoryStatusRequest;
 import com.skrepta.skreptajava.category.entity.Category;
+import com.skrepta.skreptajava.category.event.CategoryChangedEvent;
 import com.skrepta.skreptajava.category.repository.CategoryRepository;
+import com.skrepta.skreptajava.config.Transliterator;
 import com.skrepta.skreptajava.shop.entity.Shop;
 import com.skrepta.skreptajava.smartsearch.service.IndexingService;
+import com.skrepta.skreptajava.smartsearch.service.SuggestionService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
@@ -26,6 +30,9 @@ public class CategoryService {
     private final CategoryRepository categoryRepository;
     private final CategoryIconService categoryIconService;
     private final IndexingService indexingService; // ✅ ДОБАВЛЕНО
+    private final SuggestionService suggestionService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final CategoryTreeCache categoryTreeCache;
 
     @Transactional
     public CategoryResponse uploadCategoryIcon(Long categoryId, MultipartFile file) {
@@ -50,6 +57,7 @@ public class CategoryService {
 
         category.setIcon(iconUrl);
         Category savedCategory = categoryRepository.save(category);
+        eventPublisher.publishEvent(new CategoryChangedEvent(savedCategory.getId()));
         
         // ✅ ПЕРЕИНДЕКСАЦИЯ ПОСЛЕ ОБНОВЛЕНИЯ ИКОНКИ
         try {
@@ -87,6 +95,8 @@ public class CategoryService {
                 .build();
 
         Category savedCategory = categoryRepository.save(category);
+        suggestionService.updateCategory(savedCategory);
+        eventPublisher.publishEvent(new CategoryChangedEvent(savedCategory.getId()));
         
         // ✅ АВТОМАТИЧЕСКАЯ ИНДЕКСАЦИЯ
         try {
@@ -118,6 +128,8 @@ public class CategoryService {
         category.setIsActive(request.getIsActive());
 
         Category updatedCategory = categoryRepository.save(category);
+        suggestionService.updateCategory(updatedCategory);
+        eventPublisher.publishEvent(new CategoryChangedEvent(updatedCategory.getId()));
         
         // ✅ ПЕРЕИНДЕКСАЦИЯ ПОСЛЕ ОБНОВЛЕНИЯ
         try {
@@ -151,21 +163,38 @@ public class CategoryService {
         }
 
         categoryRepository.delete(category);
+        suggestionService.removeCategory(id);
+        eventPublisher.publishEvent(new CategoryChangedEvent(id));
     }
 
-    @Transactional(readOnly = true)
     public List<CategoryResponse> getAllRootCategories() {
-        return categoryRepository.findAll().stream()
-                .filter(c -> c.getParent() == null)
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+        return categoryTreeCache.get().roots();
+    }
+
+    /**
+     * Снимок дерева целиком - контроллеру нужен ETag вместе с корнями
+     */
+    public CategoryTreeCache.Snapshot getCategoryTree() {
+        return categoryTreeCache.get();
     }
 
-    @Transactional(readOnly = true)
     public CategoryResponse getCategoryById(Long id) {
-        Category category = categoryRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Category not found with ID: " + id));
-        return mapToResponse(category);
+        CategoryResponse category = categoryTreeCache.get().byId().get(id);
+        if (category == null) {
+            throw new ResourceNotFoundException("Category not found with ID: " + id);
+        }
+        return category;
+    }
+
+    /**
+     * ID категории и всех её подкатегорий (из снимка дерева, без запросов к БД)
+     */
+    public List<Long> getSubtreeIds(Long categoryId) {
+        List<Long> ids = categoryTreeCache.get().subtreeIds(categoryId);
+        if (ids == null) {
+            throw new ResourceNotFoundException("Category not found with ID: " + categoryId);
+        }
+        return ids;
     }
 
     @Transactional
@@ -175,6 +204,8 @@ public class CategoryService {
 
         category.setIsActive(request.getIsActive());
         Category savedCategory = categoryRepository.save(category);
+        suggestionService.updateCategory(savedCategory);
+        eventPublisher.publishEvent(new CategoryChangedEvent(savedCategory.getId()));
         
         // ✅ ПЕРЕИНДЕКСАЦИЯ ПОСЛЕ ИЗМЕНЕНИЯ СТАТУСА
         try {
@@ -200,24 +231,7 @@ public class CategoryService {
             throw new IllegalArgumentException("Name cannot be empty");
         }
 
-        String translit = name
-                .toLowerCase()
-                .trim()
-                .replace("а", "a").replace("б", "b").replace("в", "v")
-                .replace("г", "g").replace("д", "d").replace("е", "e")
-                .replace("ё", "e").replace("ж", "zh").replace("з", "z")
-                .replace("и", "i").replace("й", "y").replace("к", "k")
-                .replace("л", "l").replace("м", "m").replace("н", "n")
-                .replace("о", "o").replace("п", "p").replace("р", "r")
-                .replace("с", "s").replace("т", "t").replace("у", "u")
-                .replace("ф", "f").replace("х", "h").replace("ц", "ts")
-                .replace("ч", "ch").replace("ш", "sh").replace("щ", "shch")
-                .replace("ъ", "").replace("ы", "y").replace("ь", "")
-                .replace("э", "e").replace("ю", "yu").replace("я", "ya")
-                .replace("ә", "a").replace("ғ", "g").replace("қ", "k")
-                .replace("ң", "n").replace("ө", "o").replace("ұ", "u")
-                .replace("ү", "u").replace("һ", "h").replace("і", "i")
-                .replace("є", "ye").replace("і", "i").replace("ї", "yi").replace("ґ", "g");
+        String translit = Transliterator.toLatin(name.toLowerCase().trim());
 
         translit = translit.replaceAll("[^a-z0-9]+", "-");
         translit = translit.replaceAll("^-+|-+$", "");
@@ -0,0 +1,177 @@
+package com.skrepta.skreptajava.category.service;
+
+import com.skrepta.skreptajava.category.dto.CategoryResponse;
+import com.skrepta.skreptajava.category.event.CategoryChangedEvent;
+import com.skrepta.skreptajava.category.repository.CategoryFlatView;
+import com.skrepta.skreptajava.category.repository.CategoryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Кэш дерева категорий.
+ * Все категории читаются одним плоским запросом и связываются в памяти,
+ * готовое дерево хранится неизменяемым снимком с ETag. Любое изменение
+ * категории сбрасывает снимок, следующий запрос собирает новый.
+ * В том же снимке лежит замыкание "категория -> все её потомки",
+ * чтобы фильтр по поддереву был одним IN/ANY без рекурсии в SQL.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CategoryTreeCache {
+
+    private final CategoryRepository categoryRepository;
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+    // Поколение растёт при каждом сбросе: снимок, собранный до сброса, не публикуется
+    private final AtomicLong generation = new AtomicLong();
+
+    public Snapshot get() {
+        Snapshot current = snapshot.get();
+        return current != null ? current : rebuild();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        invalidate();
+    }
+
+    public void invalidate() {
+        generation.incrementAndGet();
+        snapshot.set(null);
+    }
+
+    private synchronized Snapshot rebuild() {
+        Snapshot current = snapshot.get();
+        if (current != null) {
+            return current;
+        }
+
+        long startTime = System.currentTimeMillis();
+        long gen = generation.get();
+        Snapshot fresh = build(categoryRepository.findAllFlat());
+        if (generation.get() == gen) {
+            snapshot.compareAndSet(null, fresh);
+        }
+
+        log.info("Category tree rebuilt in {}ms: {} categories, etag {}",
+                System.currentTimeMillis() - startTime, fresh.byId().size(), fresh.etag());
+        return fresh;
+    }
+
+    static Snapshot build(List<CategoryFlatView> rows) {
+        // Строки уже отсортированы по position, id - порядок детей сохраняется
+        Map<Long, List<CategoryResponse>> childrenByParent = new HashMap<>();
+        Map<Long, CategoryResponse> byId = new LinkedHashMap<>();
+        MessageDigest digest = sha256();
+
+        for (CategoryFlatView row : rows) {
+            List<CategoryResponse> children = childrenByParent.computeIfAbsent(row.getId(), id -> new ArrayList<>());
+            CategoryResponse node = CategoryResponse.builder()
+                    .id(row.getId())
+                    .name(row.getName())
+                    .slug(row.getSlug())
+                    .parentId(row.getParentId())
+                    .icon(row.getIcon())
+                    .position(row.getPosition())
+                    .isActive(row.getIsActive())
+                    .children(Collections.unmodifiableList(children))
+                    .build();
+            byId.put(row.getId(), node);
+            if (row.getParentId() != null) {
+                childrenByParent.computeIfAbsent(row.getParentId(), id -> new ArrayList<>()).add(node);
+            }
+
+            digest.update((row.getId() + "|" + row.getName() + "|" + row.getSlug() + "|" + row.getParentId() + "|"
+                    + row.getIcon() + "|" + row.getPosition() + "|" + row.getIsActive() + "\n")
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+
+        // Корни - без родителя; узел с пропавшим родителем тоже считаем корнем, чтобы он не потерялся
+        List<CategoryResponse> roots = new ArrayList<>();
+        for (CategoryResponse node : byId.values()) {
+            if (node.getParentId() == null || !byId.containsKey(node.getParentId())) {
+                roots.add(node);
+            }
+        }
+
+        Map<Long, List<Long>> subtrees = new HashMap<>(byId.size() * 2);
+        for (CategoryResponse root : roots) {
+            collectSubtree(root, subtrees, new HashSet<>());
+        }
+        // Узлы, замкнутые в цикл без корня, обходом от корней не достигаются
+        for (CategoryResponse node : byId.values()) {
+            collectSubtree(node, subtrees, new HashSet<>());
+        }
+
+        String etag = "\"" + HexFormat.of().formatHex(digest.digest(), 0, 16) + "\"";
+        return new Snapshot(List.copyOf(roots), Collections.unmodifiableMap(byId),
+                Collections.unmodifiableMap(subtrees), etag);
+    }
+
+    /**
+     * Поддерево узла (сам узел + все потомки) в порядке обхода в глубину.
+     * path защищает от цикла в parent_id - такой узел просто не уходит глубже.
+     */
+    private static List<Long> collectSubtree(CategoryResponse node, Map<Long, List<Long>> subtrees, Set<Long> path) {
+        List<Long> known = subtrees.get(node.getId());
+        if (known != null) {
+            return known;
+        }
+        List<Long> ids = new ArrayList<>();
+        ids.add(node.getId());
+        path.add(node.getId());
+        for (CategoryResponse child : node.getChildren()) {
+            if (!path.contains(child.getId())) {
+                ids.addAll(collectSubtree(child, subtrees, path));
+            }
+        }
+        path.remove(node.getId());
+        List<Long> subtree = List.copyOf(ids);
+        subtrees.put(node.getId(), subtree);
+        return subtree;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Снимок дерева: корни, все узлы по ID, поддеревья по ID и ETag содержимого.
+     * Узлы общие для всех читателей и не должны изменяться.
+     */
+    public record Snapshot(List<CategoryResponse> roots,
+                           Map<Long, CategoryResponse> byId,
+                           Map<Long, List<Long>> subtrees,
+                           String etag) {
+
+        /**
+         * ID категории и всех её потомков; null - категории нет
+         */
+        public List<Long> subtreeIds(Long categoryId) {
+            return subtrees.get(categoryId);
+        }
+    }
+}
@@ -1,67 +1,188 @@
 package com.skrepta.skreptajava.config;
 
-import com.amazonaws.auth.AWSCredentials;
-import com.amazonaws.auth.AWSStaticCredentialsProvider;
-import com.amazonaws.auth.BasicAWSCredentials;
-import com.amazonaws.client.builder.AwsClientBuilder;
-import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.AmazonS3ClientBuilder;
-import com.amazonaws.services.s3.model.CannedAccessControlList;
-import com.amazonaws.services.s3.model.ObjectMetadata;
-import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.skrepta.skreptajava.storage.repository.StoredBlobRepository;
+import com.skrepta.skreptajava.storage.repository.StoredBlobRepository.BlobRef;
+import com.skrepta.skreptajava.storage.service.ImageRenditionService;
+import com.skrepta.skreptajava.storage.service.ObjectStorage;
+import com.skrepta.skreptajava.storage.service.StorageDeletionService;
+import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import java.io.IOException;
-import java.util.UUID;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 @Service
+@RequiredArgsConstructor
 public class FileStorageService {
 
-    private AmazonS3 s3client;
+    private final StorageDeletionService storageDeletionService;
+    private final ImageRenditionService imageRenditionService;
+    private final StoredBlobRepository storedBlobRepository;
+    private final ObjectStorage objectStorage;
 
-    @Value("${ps.access-key-id}")
-    private String accessKey;
+    // Параллельных загрузок на всё приложение; сверх этого задачи ждут в очереди
+    @Value("${storage.upload.parallelism:8}")
+    private int uploadParallelism;
 
-    @Value("${ps.secret-access-key}")
-    private String secretKey;
-
-    @Value("${ps.endpoint-url}")
-    private String endpointUrl;
-
-    @Value("${ps.bucket-name}")
-    private String bucketName;
+    private ExecutorService uploadExecutor;
+    // Загрузки, для которых файл уже был в хранилище (с момента запуска)
+    private final LongAdder deduplicatedUploads = new LongAdder();
 
     @PostConstruct
-    private void initializeAmazon() {
-        AWSCredentials credentials = new BasicAWSCredentials(this.accessKey, this.secretKey);
-        this.s3client = AmazonS3ClientBuilder.standard()
-                .withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(this.endpointUrl, "us-east-1"))
-                .withCredentials(new AWSStaticCredentialsProvider(credentials))
-                .build();
+    private void init() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.uploadExecutor = Executors.newFixedThreadPool(uploadParallelism, r -> {
+            Thread thread = new Thread(r, "s3-upload-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        uploadExecutor.shutdown();
     }
 
+    /**
+     * Загрузка с ключом по содержимому: SHA-256 файла + расширение.
+     * Если такой файл уже лежит в хранилище, PUT не делается - только +1 ссылка.
+     */
     public String uploadFile(MultipartFile file) throws IOException {
-        String fileExtension = getFileExtension(file.getOriginalFilename());
-        String uniqueFileName = UUID.randomUUID().toString() + fileExtension;
+        String sha256 = sha256Of(file);
+        String key = sha256 + getFileExtension(file.getOriginalFilename()).toLowerCase(Locale.ROOT);
+        String url = objectStorage.url(key);
+
+        BlobRef ref = storedBlobRepository.acquire(key, sha256, file.getSize());
+        if (ref.uploaded()) {
+            deduplicatedUploads.increment();
+            return url;
+        }
+
+        try (InputStream content = file.getInputStream()) {
+            objectStorage.put(key, content, file.getSize(), file.getContentType(), null);
+        } catch (IOException | RuntimeException e) {
+            deleteFiles(List.of(url));
+            throw e;
+        }
 
-        ObjectMetadata metadata = new ObjectMetadata();
-        metadata.setContentLength(file.getSize());
-        metadata.setContentType(file.getContentType());
+        storedBlobRepository.markUploaded(key);
+        return url;
+    }
 
-        PutObjectRequest request = new PutObjectRequest(bucketName, uniqueFileName, file.getInputStream(), metadata)
-                .withCannedAcl(CannedAccessControlList.PublicRead);
+    private static String sha256Of(MultipartFile file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
 
-        s3client.putObject(request);
+    /**
+     * Загружает файлы параллельно и возвращает URL в исходном порядке.
+     * Если хоть один файл не загрузился, уже загруженные ставятся в очередь удаления.
+     * Вызывать вне транзакции: соединение с БД не должно ждать сети.
+     */
+    public List<String> uploadFiles(List<MultipartFile> files) {
+        if (files == null || files.isEmpty()) {
+            return List.of();
+        }
 
-        return s3client.getUrl(bucketName, uniqueFileName).toString();
+        List<Future<String>> futures = new ArrayList<>(files.size());
+        for (MultipartFile file : files) {
+            futures.add(uploadExecutor.submit(() -> uploadFile(file)));
+        }
+
+        List<String> urls = new ArrayList<>(files.size());
+        Exception failure = null;
+        for (Future<String> future : futures) {
+            try {
+                urls.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = e;
+            } catch (ExecutionException e) {
+                failure = failure != null ? failure : e;
+            }
+        }
+
+        if (failure != null) {
+            deleteFiles(urls);
+            Throwable cause = failure instanceof ExecutionException ? failure.getCause() : failure;
+            throw new RuntimeException("Failed to upload file to storage.", cause);
+        }
+        return urls;
     }
 
+    /**
+     * Снимает ссылку на файл. Объект ставится в очередь на удаление
+     * (см. StorageDeletionService), только если ссылок на него больше нет;
+     * удаление произойдёт в фоне после коммита текущей транзакции
+     */
     public void deleteFile(String fileUrl) {
-        String fileName = fileUrl.substring(fileUrl.lastIndexOf("/") + 1);
-        s3client.deleteObject(bucketName, fileName);
+        if (fileUrl == null || fileUrl.isBlank()) return;
+        deleteFiles(List.of(fileUrl));
+    }
+
+    /**
+     * То же для списка; каждое вхождение URL - одна ссылка
+     */
+    public void deleteFiles(Collection<String> fileUrls) {
+        if (fileUrls == null) return;
+        List<String> urls = fileUrls.stream()
+                .filter(url -> url != null && !url.isBlank())
+                .toList();
+        if (urls.isEmpty()) return;
+
+        Map<String, Integer> remaining = storedBlobRepository.release(urls.stream().map(FileStorageService::keyOf).toList());
+        // Файлы без счётчика (загруженные до дедупликации) удаляются сразу
+        List<String> unreferenced = urls.stream()
+                .filter(url -> remaining.getOrDefault(keyOf(url), 0) == 0)
+                .distinct()
+                .toList();
+
+        storageDeletionService.enqueue(unreferenced.stream().map(FileStorageService::keyOf).toList());
+        // Уменьшенные копии удаляются вместе с оригиналом
+        imageRenditionService.deleteFor(unreferenced);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(storedBlobRepository.getStats());
+        stats.put("storage", objectStorage.getStats());
+        stats.put("deduplicated_uploads", deduplicatedUploads.sum());
+        return stats;
+    }
+
+    /**
+     * Ключ объекта по публичному URL: файлы лежат в корне бакета
+     */
+    public static String keyOf(String fileUrl) {
+        return fileUrl.substring(fileUrl.lastIndexOf("/") + 1);
     }
 
     private String getFileExtension(String fileName) {
@@ -0,0 +1,26 @@
+package com.skrepta.skreptajava.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.nio.file.Path;
+
+/**
+ * Раздача файлов локального хранилища по /files/** (storage.backend=filesystem)
+ */
+@Configuration
+@ConditionalOnProperty(name = "storage.backend", havingValue = "filesystem")
+public class FileSystemStorageConfig implements WebMvcConfigurer {
+
+    @Value("${storage.filesystem.root:./storage-data}")
+    private Path root;
+
+    @Override
+    public void addResourceHandlers(ResourceHandlerRegistry registry) {
+        registry.addResourceHandler("/files/**")
+                .addResourceLocations(root.toAbsolutePath().normalize().toUri().toString());
+    }
+}
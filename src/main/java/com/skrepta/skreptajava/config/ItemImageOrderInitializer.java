@@ -0,0 +1,50 @@
+package com.skrepta.skreptajava.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Нумерация item_images.image_order у фото, сохранённых до появления колонки
+ * (у них у всех 0 по умолчанию). Hibernate собрал бы из одинаковых индексов список
+ * из одного фото, поэтому это выполняется при создании бинов (после ddl-auto),
+ * а не в CommandLineRunner, когда сервер уже принимает запросы.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ItemImageOrderInitializer {
+
+    private final JdbcTemplate jdbcTemplate;
+    // Зависимость гарантирует, что схема уже обновлена Hibernate
+    private final EntityManagerFactory entityManagerFactory;
+
+    @PostConstruct
+    public void backfillImageOrder() {
+        try {
+            // Старые строки нумеруются в порядке их физического размещения (порядок вставки)
+            int updated = jdbcTemplate.update("""
+                UPDATE item_images ii
+                SET image_order = numbered.position
+                FROM (
+                    SELECT ctid, row_number() OVER (PARTITION BY item_id ORDER BY ctid) - 1 AS position
+                    FROM item_images
+                    WHERE item_id IN (
+                        SELECT item_id FROM item_images
+                        GROUP BY item_id
+                        HAVING COUNT(*) <> COUNT(DISTINCT image_order)
+                    )
+                ) numbered
+                WHERE ii.ctid = numbered.ctid
+                """);
+            if (updated > 0) {
+                log.info("--- Backfilled image_order for {} item images ---", updated);
+            }
+        } catch (Exception e) {
+            log.error("Failed to backfill item image order: {}", e.getMessage());
+        }
+    }
+}
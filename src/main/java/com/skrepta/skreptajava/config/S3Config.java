@@ -1,16 +1,28 @@
 package com.skrepta.skreptajava.config;
 
+import com.amazonaws.ClientConfiguration;
 import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.auth.AWSStaticCredentialsProvider;
 import com.amazonaws.auth.BasicAWSCredentials;
 import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.retry.PredefinedRetryPolicies;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.skrepta.skreptajava.storage.service.S3RequestMetrics;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+
+/**
+ * Единственный клиент S3 на приложение: общий пул соединений,
+ * таймауты и повторы настраиваются в application.properties.
+ * С storage.backend=filesystem клиент не создаётся.
+ */
 @Configuration
+@ConditionalOnProperty(name = "storage.backend", havingValue = "s3", matchIfMissing = true)
 public class S3Config {
 
     @Value("${ps.access-key-id}")
@@ -22,12 +34,48 @@ public class S3Config {
     @Value("${ps.endpoint-url}")
     private String endpointUrl;
 
+    @Value("${storage.s3.max-connections:64}")
+    private int maxConnections;
+
+    @Value("${storage.s3.connection-timeout:5s}")
+    private Duration connectionTimeout;
+
+    @Value("${storage.s3.socket-timeout:30s}")
+    private Duration socketTimeout;
+
+    @Value("${storage.s3.max-error-retry:3}")
+    private int maxErrorRetry;
+
+    // Соединения старше этого переоткрываются (балансировщик перед хранилищем мог их закрыть)
+    @Value("${storage.s3.connection-ttl:60s}")
+    private Duration connectionTtl;
+
+    // Адреса вида endpoint/bucket/key - нужно для MinIO и большинства локальных S3
+    @Value("${storage.s3.path-style-access:false}")
+    private boolean pathStyleAccess;
+
     @Bean
-    public AmazonS3 amazonS3Client() {
+    public S3RequestMetrics s3RequestMetrics() {
+        return new S3RequestMetrics(maxConnections);
+    }
+
+    @Bean
+    public AmazonS3 amazonS3Client(S3RequestMetrics s3RequestMetrics) {
         AWSCredentials credentials = new BasicAWSCredentials(accessKey, secretKey);
+        ClientConfiguration clientConfiguration = new ClientConfiguration()
+                .withMaxConnections(maxConnections)
+                .withConnectionTimeout((int) connectionTimeout.toMillis())
+                .withSocketTimeout((int) socketTimeout.toMillis())
+                .withConnectionTTL(connectionTtl.toMillis())
+                .withTcpKeepAlive(true)
+                .withRetryPolicy(PredefinedRetryPolicies.getDefaultRetryPolicyWithCustomMaxRetries(maxErrorRetry));
+
         return AmazonS3ClientBuilder.standard()
                 .withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(endpointUrl, "us-east-1"))
                 .withCredentials(new AWSStaticCredentialsProvider(credentials))
+                .withClientConfiguration(clientConfiguration)
+                .withPathStyleAccessEnabled(pathStyleAccess)
+                .withMetricsCollector(s3RequestMetrics)
                 .build();
     }
 }
\ No newline at end of file
@@ -0,0 +1,52 @@
+package com.skrepta.skreptajava.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Транслитерация кириллицы (русский, казахский, украинский алфавиты) в латиницу.
+ * Используется для slug категорий и для сравнения поисковых запросов,
+ * набранных в разных раскладках ("podarok" / "подарок").
+ */
+public final class Transliterator {
+
+    private static final Map<Character, String> CYRILLIC_TO_LATIN = new HashMap<>();
+
+    static {
+        String[][] pairs = {
+                {"а", "a"}, {"б", "b"}, {"в", "v"}, {"г", "g"}, {"д", "d"}, {"е", "e"},
+                {"ё", "e"}, {"ж", "zh"}, {"з", "z"}, {"и", "i"}, {"й", "y"}, {"к", "k"},
+                {"л", "l"}, {"м", "m"}, {"н", "n"}, {"о", "o"}, {"п", "p"}, {"р", "r"},
+                {"с", "s"}, {"т", "t"}, {"у", "u"}, {"ф", "f"}, {"х", "h"}, {"ц", "ts"},
+                {"ч", "ch"}, {"ш", "sh"}, {"щ", "shch"}, {"ъ", ""}, {"ы", "y"}, {"ь", ""},
+                {"э", "e"}, {"ю", "yu"}, {"я", "ya"},
+                {"ә", "a"}, {"ғ", "g"}, {"қ", "k"}, {"ң", "n"}, {"ө", "o"}, {"ұ", "u"},
+                {"ү", "u"}, {"һ", "h"}, {"і", "i"},
+                {"є", "ye"}, {"ї", "yi"}, {"ґ", "g"}
+        };
+        for (String[] pair : pairs) {
+            CYRILLIC_TO_LATIN.put(pair[0].charAt(0), pair[1]);
+        }
+    }
+
+    private Transliterator() {
+    }
+
+    /**
+     * Заменяет строчные кириллические буквы латинскими, остальные символы не трогает.
+     * Текст должен быть уже приведён к нижнему регистру.
+     */
+    public static String toLatin(String text) {
+        StringBuilder sb = new StringBuilder(text.length() + 8);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            String latin = CYRILLIC_TO_LATIN.get(c);
+            if (latin != null) {
+                sb.append(latin);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
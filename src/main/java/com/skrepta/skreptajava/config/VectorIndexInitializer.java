@@ -0,0 +1,45 @@
+package com.skrepta.skreptajava.config;
+
+import com.skrepta.skreptajava.smartsearch.repository.SearchRepository;
+import com.skrepta.skreptajava.smartsearch.service.IndexingService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * Индексы pgvector, которые Hibernate (ddl-auto=update) не создаёт сам,
+ * и дозаполнение укороченных векторов у старых товаров
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class VectorIndexInitializer implements CommandLineRunner {
+
+    private final SearchRepository searchRepository;
+    private final IndexingService indexingService;
+
+    @Override
+    public void run(String... args) {
+        try {
+            searchRepository.createShortEmbeddingIndex();
+            log.info("--- HNSW index on items.embedding_short is ready ---");
+        } catch (Exception e) {
+            // Старый pgvector без HNSW: TWO_STAGE работает, но первый этап без индекса
+            log.warn("Could not create HNSW index on items.embedding_short: {}", e.getMessage());
+        }
+
+        try {
+            searchRepository.createFieldEmbeddingIndex();
+            log.info("--- HNSW index on item_field_embeddings.embedding is ready ---");
+        } catch (Exception e) {
+            log.warn("Could not create HNSW index on item_field_embeddings.embedding: {}", e.getMessage());
+        }
+
+        try {
+            indexingService.backfillShortEmbeddings();
+        } catch (Exception e) {
+            log.error("Failed to backfill short embeddings: {}", e.getMessage());
+        }
+    }
+}
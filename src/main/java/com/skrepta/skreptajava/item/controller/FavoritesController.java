@@ -1,7 +1,12 @@
 package com.skrepta.skreptajava.item.controller;
 
+import com.skrepta.skreptajava.item.dto.CursorPage;
+import com.skrepta.skreptajava.item.dto.FavoriteCheckRequest;
+import com.skrepta.skreptajava.item.dto.FavoriteCheckResponse;
+import com.skrepta.skreptajava.item.dto.ItemCardResponse;
 import com.skrepta.skreptajava.item.dto.ItemResponse;
 import com.skrepta.skreptajava.item.service.FavoritesService;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -23,6 +28,23 @@ public class FavoritesController {
         return ResponseEntity.ok(favoritesService.getFavorites());
     }
 
+    // USER endpoint: Paginated favorites as slim cards
+    @GetMapping("/page")
+    @PreAuthorize("hasAnyRole('USER', 'SHOP', 'ADMIN')")
+    public ResponseEntity<CursorPage<ItemCardResponse>> getFavoritesPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size
+    ) {
+        return ResponseEntity.ok(favoritesService.getFavoritesPage(cursor, size));
+    }
+
+    // USER endpoint: Which of the given items are favorited (bulk, for feed cards)
+    @PostMapping("/check")
+    @PreAuthorize("hasAnyRole('USER', 'SHOP', 'ADMIN')")
+    public ResponseEntity<FavoriteCheckResponse> checkFavorites(@Valid @RequestBody FavoriteCheckRequest request) {
+        return ResponseEntity.ok(new FavoriteCheckResponse(favoritesService.filterFavorites(request.getIds())));
+    }
+
     // USER endpoint: Add item to favorites
     @PostMapping("/{itemId}")
     @PreAuthorize("hasAnyRole('USER', 'SHOP', 'ADMIN')")
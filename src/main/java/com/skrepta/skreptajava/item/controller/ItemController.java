@@ -1,8 +1,14 @@
 package com.skrepta.skreptajava.item.controller;
 
+import com.skrepta.skreptajava.item.dto.CursorPage;
+import com.skrepta.skreptajava.item.dto.ItemFeedResponse;
 import com.skrepta.skreptajava.item.dto.ItemRequest;
 import com.skrepta.skreptajava.item.dto.ItemResponse;
+import com.skrepta.skreptajava.item.dto.ItemViewsResponse;
 import com.skrepta.skreptajava.item.service.ItemService;
+import com.skrepta.skreptajava.item.service.TrendingService;
+import com.skrepta.skreptajava.item.service.ViewDeduplicator;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
@@ -20,6 +26,8 @@ import java.util.Map;
 public class ItemController {
 
     private final ItemService itemService;
+    private final TrendingService trendingService;
+    private final ViewDeduplicator viewDeduplicator;
 
     // Public endpoint: Get all active items (The main feed)
     @GetMapping("/items")
@@ -27,6 +35,21 @@ public class ItemController {
         return ResponseEntity.ok(itemService.getAllActiveItems());
     }
 
+    // Public endpoint: Paginated main feed (keyset by createdAt, id)
+    @GetMapping("/items/feed")
+    public ResponseEntity<CursorPage<ItemFeedResponse>> getFeed(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size
+    ) {
+        return ResponseEntity.ok(itemService.getFeed(cursor, size));
+    }
+
+    // Public endpoint: Trending items (precomputed top-N, refreshed in background)
+    @GetMapping("/items/trending")
+    public ResponseEntity<List<ItemFeedResponse>> getTrending(@RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(trendingService.getTrending(limit));
+    }
+
     // Public endpoint: Get item by ID
     @GetMapping("/items/{id}")
     public ResponseEntity<ItemResponse> getItemById(@PathVariable Long id) {
@@ -67,10 +90,16 @@ public class ItemController {
         return ResponseEntity.noContent().build();
     }
 
-    // Public endpoint: Increment item view count
+    // Public endpoint: Increment item view count (repeated views from the same client are deduplicated)
     @PostMapping("/items/{id}/view")
-    public ResponseEntity<Map<String, String>> incrementItemView(@PathVariable Long id) {
-        itemService.incrementItemView(id);
+    public ResponseEntity<Map<String, String>> incrementItemView(@PathVariable Long id, HttpServletRequest request) {
+        itemService.incrementItemView(id, viewDeduplicator.fingerprint(request));
         return ResponseEntity.ok(Map.of("message", "View incremented successfully"));
     }
+
+    // Public endpoint: Unique vs raw view counts of an item
+    @GetMapping("/items/{id}/views")
+    public ResponseEntity<ItemViewsResponse> getItemViews(@PathVariable Long id) {
+        return ResponseEntity.ok(itemService.getItemViews(id));
+    }
 }
\ No newline at end of file
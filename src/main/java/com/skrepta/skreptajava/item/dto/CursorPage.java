@@ -0,0 +1,43 @@
+package com.skrepta.skreptajava.item.dto;
+
+import com.skrepta.skreptajava.auth.exception.InvalidCursorException;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Страница с keyset-пагинацией: следующая страница запрашивается по nextCursor
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+    private List<T> items;
+    private String nextCursor; // null, если страниц больше нет
+    private boolean hasMore;
+
+    /**
+     * Курсор для списков, упорядоченных по id по убыванию: id последнего элемента
+     */
+    public static String idCursor(Long lastId) {
+        return String.valueOf(lastId);
+    }
+
+    /**
+     * Разбирает id-курсор; без курсора - начало списка
+     */
+    public static long parseIdCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return Long.MAX_VALUE;
+        }
+        try {
+            return Long.parseLong(cursor.trim());
+        } catch (NumberFormatException e) {
+            throw new InvalidCursorException("Invalid cursor: " + cursor);
+        }
+    }
+}
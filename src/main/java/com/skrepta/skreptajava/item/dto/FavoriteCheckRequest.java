@@ -0,0 +1,14 @@
+package com.skrepta.skreptajava.item.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class FavoriteCheckRequest {
+    @NotNull
+    @Size(max = 500)
+    private List<Long> ids; // ID товаров или магазинов на странице
+}
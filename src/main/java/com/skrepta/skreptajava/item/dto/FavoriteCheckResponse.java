@@ -0,0 +1,12 @@
+package com.skrepta.skreptajava.item.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class FavoriteCheckResponse {
+    private List<Long> favoriteIds; // Те из запрошенных ID, что в избранном
+}
@@ -0,0 +1,18 @@
+package com.skrepta.skreptajava.item.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Лёгкая карточка товара для списков (избранное)
+ */
+@Data
+@Builder
+public class ItemCardResponse {
+    private Long id;
+    private String title;
+    private String image; // Первая картинка или null
+    private String thumbnail; // Её миниатюра (пока не готова - сама картинка)
+    private Long shopId;
+    private String shopName;
+}
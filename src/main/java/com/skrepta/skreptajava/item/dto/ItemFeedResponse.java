@@ -0,0 +1,28 @@
+package com.skrepta.skreptajava.item.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Карточка товара для главной ленты (без описания и полного магазина)
+ */
+@Data
+@Builder
+public class ItemFeedResponse {
+    private Long id;
+    private String title;
+    private List<String> images;
+    // Миниатюры фото в том же порядке, что и images
+    private List<String> thumbnails;
+    private List<String> tags;
+    private String city;
+    private int views;
+    private int favorites;
+    private Instant createdAt;
+    private Long shopId;
+    private String shopName;
+    private String shopLogoUrl;
+}
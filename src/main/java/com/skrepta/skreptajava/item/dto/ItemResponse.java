@@ -1,6 +1,7 @@
 package com.skrepta.skreptajava.item.dto;
 
 import com.skrepta.skreptajava.shop.dto.ShopResponse;
+import com.skrepta.skreptajava.storage.dto.ImageVariants;
 import lombok.Builder;
 import lombok.Data;
 
@@ -15,6 +16,8 @@ public class ItemResponse {
     private String title;
     private String description;
     private List<String> images;
+    // Размеры фото в том же порядке, что и images
+    private List<ImageVariants> imageVariants;
     private List<String> tags;
     private String city;
     private boolean isActive;
@@ -0,0 +1,12 @@
+package com.skrepta.skreptajava.item.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class ItemViewsResponse {
+    private Long itemId;
+    private long uniqueViews; // Без повторов от того же клиента
+    private long rawViews; // Все вызовы /view
+}
@@ -19,7 +19,10 @@ import org.hibernate.annotations.Type;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "items")
+@Table(name = "items", indexes = {
+        // Лента: активные товары по (created_at, id) для keyset-пагинации
+        @Index(name = "idx_items_feed", columnList = "is_active, created_at, id")
+})
 public class Item {
 
     @Id
@@ -36,8 +39,11 @@ public class Item {
     @Column(columnDefinition = "TEXT")
     private String description;
 
+    // Порядок фото хранится явно: первое фото - обложка карточки.
+    // DEFAULT нужен, чтобы колонка добавилась в непустую таблицу (см. ItemImageOrderInitializer)
     @ElementCollection
     @CollectionTable(name = "item_images", joinColumns = @JoinColumn(name = "item_id"))
+    @OrderColumn(name = "image_order", columnDefinition = "integer default 0")
     @Column(name = "image_url")
     private List<String> images;
 
@@ -49,6 +55,10 @@ public class Item {
     private String city;
     private boolean isActive = true;
     private int views = 0;
+    // Все просмотры, включая повторные от того же клиента (views - только уникальные)
+    @Column(name = "raw_views", nullable = false, columnDefinition = "integer not null default 0")
+    @Builder.Default
+    private int rawViews = 0;
     private int favorites = 0;
 
     @Column(nullable = false)
@@ -61,6 +71,11 @@ public class Item {
     @Column(columnDefinition = "vector(1536)")
     private PGvector embedding;
 
+    // Укороченный (Matryoshka) вектор для первого этапа двухэтапного поиска
+    @Type(VectorType.class)
+    @Column(name = "embedding_short", columnDefinition = "vector(256)")
+    private PGvector embeddingShort;
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
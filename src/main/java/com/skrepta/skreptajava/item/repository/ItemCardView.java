@@ -0,0 +1,12 @@
+package com.skrepta.skreptajava.item.repository;
+
+/**
+ * Проекция карточки товара: название, первая картинка и магазин
+ */
+public interface ItemCardView {
+    Long getId();
+    String getTitle();
+    String getImage();
+    Long getShopId();
+    String getShopName();
+}
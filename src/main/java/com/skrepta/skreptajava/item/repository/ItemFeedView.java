@@ -0,0 +1,18 @@
+package com.skrepta.skreptajava.item.repository;
+
+import java.time.Instant;
+
+/**
+ * Проекция строки ленты: товар и его магазин одним запросом
+ */
+public interface ItemFeedView {
+    Long getId();
+    String getTitle();
+    String getCity();
+    int getViews();
+    int getFavorites();
+    Instant getCreatedAt();
+    Long getShopId();
+    String getShopName();
+    String getShopLogoUrl();
+}
@@ -1,16 +1,136 @@
 package com.skrepta.skreptajava.item.repository;
 
 import com.skrepta.skreptajava.item.entity.Item;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface ItemRepository extends JpaRepository<Item, Long> {
     // ✅ Получить все товары магазина
     List<Item> findByShopId(Long shopId);
+
+    @Query("SELECT i.id FROM Item i WHERE i.shop.id = :shopId")
+    List<Long> findIdsByShopId(@Param("shopId") Long shopId);
+
+    @Query(value = """
+            SELECT ii.image_url FROM item_images ii
+            JOIN items i ON i.id = ii.item_id
+            WHERE i.shop_id = :shopId
+            """, nativeQuery = true)
+    List<String> findImageUrlsByShopId(@Param("shopId") Long shopId);
     
     // ✅ Получить только активные товары магазина (альтернатива)
     List<Item> findByShopIdAndIsActive(Long shopId, boolean isActive);
+
+    // Все активные товары (фильтр в SQL, а не в Java)
+    List<Item> findByIsActiveTrue();
+
+    // ============================================
+    // Лента: keyset-пагинация по (created_at, id)
+    // ============================================
+
+    @Query("""
+            SELECT i.id AS id, i.title AS title, i.city AS city, i.views AS views,
+                   i.favorites AS favorites, i.createdAt AS createdAt,
+                   s.id AS shopId, s.name AS shopName, s.logoUrl AS shopLogoUrl
+            FROM Item i JOIN i.shop s
+            WHERE i.isActive = true
+            ORDER BY i.createdAt DESC, i.id DESC
+            """)
+    List<ItemFeedView> findFeedFirstPage(Pageable pageable);
+
+    @Query("""
+            SELECT i.id AS id, i.title AS title, i.city AS city, i.views AS views,
+                   i.favorites AS favorites, i.createdAt AS createdAt,
+                   s.id AS shopId, s.name AS shopName, s.logoUrl AS shopLogoUrl
+            FROM Item i JOIN i.shop s
+            WHERE i.isActive = true
+              AND (i.createdAt < :createdAt OR (i.createdAt = :createdAt AND i.id < :id))
+            ORDER BY i.createdAt DESC, i.id DESC
+            """)
+    List<ItemFeedView> findFeedPageAfter(@Param("createdAt") Instant createdAt,
+                                         @Param("id") Long id,
+                                         Pageable pageable);
+
+    @Query(value = """
+            SELECT item_id AS "itemId", image_url AS "value" FROM item_images
+            WHERE item_id IN (:itemIds)
+            ORDER BY item_id, image_order
+            """, nativeQuery = true)
+    List<ItemValueView> findImagesByItemIds(@Param("itemIds") Collection<Long> itemIds);
+
+    @Query(value = "SELECT item_id AS \"itemId\", tag AS \"value\" FROM item_tags WHERE item_id IN (:itemIds)",
+            nativeQuery = true)
+    List<ItemValueView> findTagsByItemIds(@Param("itemIds") Collection<Long> itemIds);
+
+    @Query("""
+            SELECT i.id AS id, i.title AS title, i.city AS city, i.views AS views,
+                   i.favorites AS favorites, i.createdAt AS createdAt,
+                   s.id AS shopId, s.name AS shopName, s.logoUrl AS shopLogoUrl
+            FROM Item i JOIN i.shop s
+            WHERE i.isActive = true AND i.id IN :ids
+            """)
+    List<ItemFeedView> findFeedByIds(@Param("ids") Collection<Long> ids);
+
+    // ============================================
+    // Trending: начальные счётчики
+    // ============================================
+
+    @Query("""
+            SELECT i.id AS id, i.views AS views, i.favorites AS favorites, i.createdAt AS createdAt
+            FROM Item i
+            WHERE i.isActive = true AND (i.views > 0 OR i.favorites > 0)
+            """)
+    List<ItemStatsView> findTrendingSeed();
+
+    // ============================================
+    // Избранное: атомарные операции без загрузки сущностей
+    // ============================================
+
+    // Вставка только для существующего товара; 0 - товара нет или он уже в избранном
+    @Modifying
+    @Query(value = """
+            INSERT INTO user_favorites (user_id, item_id)
+            SELECT :userId, i.id FROM items i WHERE i.id = :itemId
+            ON CONFLICT DO NOTHING
+            """, nativeQuery = true)
+    int insertFavorite(@Param("userId") Long userId, @Param("itemId") Long itemId);
+
+    @Modifying
+    @Query(value = "DELETE FROM user_favorites WHERE user_id = :userId AND item_id = :itemId", nativeQuery = true)
+    int deleteFavorite(@Param("userId") Long userId, @Param("itemId") Long itemId);
+
+    @Modifying
+    @Query(value = "UPDATE items SET favorites = GREATEST(favorites + :delta, 0) WHERE id = :itemId", nativeQuery = true)
+    int adjustFavorites(@Param("itemId") Long itemId, @Param("delta") int delta);
+
+    // ID избранных товаров пользователя (по первичному ключу user_favorites)
+    @Query(value = "SELECT item_id FROM user_favorites WHERE user_id = :userId", nativeQuery = true)
+    List<Long> findFavoriteItemIds(@Param("userId") Long userId);
+
+    // Избранные товары пользователя карточками, keyset по id (одна страница - один запрос).
+    // Алиасы в кавычках: PostgreSQL иначе приводит их к нижнему регистру
+    @Query(value = """
+            SELECT i.id AS "id", i.title AS "title",
+                   (SELECT ii.image_url FROM item_images ii WHERE ii.item_id = i.id
+                    ORDER BY ii.image_order LIMIT 1) AS "image",
+                   s.id AS "shopId", s.name AS "shopName"
+            FROM user_favorites f
+            JOIN items i ON i.id = f.item_id
+            JOIN shops s ON s.id = i.shop_id
+            WHERE f.user_id = :userId AND i.id < :beforeId
+            ORDER BY i.id DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<ItemCardView> findFavoriteCards(@Param("userId") Long userId,
+                                         @Param("beforeId") Long beforeId,
+                                         @Param("limit") int limit);
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package com.skrepta.skreptajava.item.repository;
+
+import java.time.Instant;
+
+/**
+ * Накопленные счётчики товара для начального расчёта trending
+ */
+public interface ItemStatsView {
+    Long getId();
+    int getViews();
+    int getFavorites();
+    Instant getCreatedAt();
+}
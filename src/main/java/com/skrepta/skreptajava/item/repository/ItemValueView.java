@@ -0,0 +1,9 @@
+package com.skrepta.skreptajava.item.repository;
+
+/**
+ * Значение коллекции товара (картинка или тег) с ID товара
+ */
+public interface ItemValueView {
+    Long getItemId();
+    String getValue();
+}
@@ -0,0 +1,110 @@
+package com.skrepta.skreptajava.item.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.skrepta.skreptajava.item.repository.ItemRepository;
+import com.skrepta.skreptajava.shop.repository.ShopRepository;
+import lombok.RequiredArgsConstructor;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Быстрая проверка "в избранном ли": ID избранных товаров и магазинов
+ * пользователя хранятся в сжатых битовых картах (Roaring), загружаемых
+ * одним индексным запросом по user_id. Карта не меняется после загрузки
+ * и просто выбрасывается из кэша при добавлении/удалении.
+ */
+@Service
+@RequiredArgsConstructor
+public class FavoriteMembershipService {
+
+    private final ItemRepository itemRepository;
+    private final ShopRepository shopRepository;
+
+    private final Cache<Long, Roaring64Bitmap> itemFavorites = newCache();
+    private final Cache<Long, Roaring64Bitmap> shopFavorites = newCache();
+
+    public boolean isItemFavorite(Long userId, Long itemId) {
+        return itemFavorites(userId).contains(itemId);
+    }
+
+    public boolean isShopFavorite(Long userId, Long shopId) {
+        return shopFavorites(userId).contains(shopId);
+    }
+
+    /**
+     * Подмножество переданных ID товаров, которые у пользователя в избранном (в исходном порядке)
+     */
+    public List<Long> filterFavoriteItems(Long userId, Collection<Long> itemIds) {
+        return filter(itemFavorites(userId), itemIds);
+    }
+
+    public List<Long> filterFavoriteShops(Long userId, Collection<Long> shopIds) {
+        return filter(shopFavorites(userId), shopIds);
+    }
+
+    public void invalidateItems(Long userId) {
+        invalidateAfterCommit(itemFavorites, userId);
+    }
+
+    public void invalidateShops(Long userId) {
+        invalidateAfterCommit(shopFavorites, userId);
+    }
+
+    private Roaring64Bitmap itemFavorites(Long userId) {
+        return itemFavorites.get(userId, load(itemRepository::findFavoriteItemIds));
+    }
+
+    private Roaring64Bitmap shopFavorites(Long userId) {
+        return shopFavorites.get(userId, load(shopRepository::findFavoriteShopIds));
+    }
+
+    private static Function<Long, Roaring64Bitmap> load(Function<Long, List<Long>> query) {
+        return userId -> {
+            Roaring64Bitmap bitmap = new Roaring64Bitmap();
+            query.apply(userId).forEach(bitmap::addLong);
+            bitmap.runOptimize();
+            return bitmap;
+        };
+    }
+
+    private static List<Long> filter(Roaring64Bitmap bitmap, Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return List.of();
+        }
+        return ids.stream()
+                .filter(id -> id != null && bitmap.contains(id))
+                .distinct()
+                .toList();
+    }
+
+    /**
+     * Сбрасываем и сразу, и после коммита: иначе параллельный запрос мог бы
+     * успеть закэшировать состояние до коммита
+     */
+    private static void invalidateAfterCommit(Cache<Long, Roaring64Bitmap> cache, Long userId) {
+        cache.invalidate(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidate(userId);
+                }
+            });
+        }
+    }
+
+    private static Cache<Long, Roaring64Bitmap> newCache() {
+        return Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterAccess(Duration.ofMinutes(30))
+                .build();
+    }
+}
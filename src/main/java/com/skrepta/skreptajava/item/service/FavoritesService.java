@@ -3,17 +3,24 @@ package com.skrepta.skreptajava.item.service;
 import com.skrepta.skreptajava.auth.entity.User;
 import com.skrepta.skreptajava.auth.exception.ResourceNotFoundException;
 import com.skrepta.skreptajava.auth.repository.UserRepository;
+import com.skrepta.skreptajava.item.dto.CursorPage;
+import com.skrepta.skreptajava.item.dto.ItemCardResponse;
 import com.skrepta.skreptajava.item.dto.ItemResponse;
-import com.skrepta.skreptajava.item.entity.Item;
+import com.skrepta.skreptajava.item.repository.ItemCardView;
 import com.skrepta.skreptajava.item.repository.ItemRepository;
+import com.skrepta.skreptajava.storage.dto.ImageVariants;
+import com.skrepta.skreptajava.storage.service.ImageRenditionService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -22,6 +29,12 @@ public class FavoritesService {
     private final UserRepository userRepository;
     private final ItemRepository itemRepository;
     private final ItemService itemService; // Для маппинга ItemResponse
+    private final TrendingService trendingService;
+    private final ViewDeduplicator viewDeduplicator;
+    private final FavoriteMembershipService favoriteMembershipService;
+    private final ImageRenditionService imageRenditionService;
+
+    private static final int MAX_PAGE_SIZE = 100;
 
     /**
      * Retrieves the current authenticated user.
@@ -39,44 +52,120 @@ public class FavoritesService {
     @Transactional(readOnly = true)
     public List<ItemResponse> getFavorites() {
         User user = getCurrentUser();
-        return user.getFavorites().stream()
-                .map(itemService::mapToResponse)
-                .collect(Collectors.toList());
+        return itemService.mapToResponses(user.getFavorites());
+    }
+
+    /**
+     * Retrieves only the current user's ID (no entity, no favorites collection).
+     */
+    private Long getCurrentUserId() {
+        String email = SecurityContextHolder.getContext().getAuthentication().getName();
+        return userRepository.findIdByEmail(email)
+                .orElseThrow(() -> new ResourceNotFoundException("Authenticated user not found."));
     }
 
     /**
      * Adds an item to the current user's favorites.
+     * One INSERT ... ON CONFLICT DO NOTHING plus an atomic counter update,
+     * regardless of how many favorites the user has.
      * @param itemId The ID of the item to add.
      */
     @Transactional
     public void addItemToFavorites(Long itemId) {
-        User user = getCurrentUser();
-        Item item = itemRepository.findById(itemId)
-                .orElseThrow(() -> new ResourceNotFoundException("Item not found with ID: " + itemId));
+        Long userId = getCurrentUserId();
 
-        if (user.getFavorites().add(item)) {
+        if (itemRepository.insertFavorite(userId, itemId) == 1) {
             // Увеличиваем счетчик избранного у товара
-            item.setFavorites(item.getFavorites() + 1);
-            itemRepository.save(item);
-            userRepository.save(user);
+            itemRepository.adjustFavorites(itemId, 1);
+            favoriteMembershipService.invalidateItems(userId);
+            recordTrendingFavoriteAfterCommit(userId, itemId);
+        } else if (!itemRepository.existsById(itemId)) {
+            throw new ResourceNotFoundException("Item not found with ID: " + itemId);
+        }
+    }
+
+    /**
+     * Scores a favorite for trending once per (user, item) within the dedup window,
+     * so add/remove loops cannot push an item up. Runs only after the insert commits.
+     */
+    private void recordTrendingFavoriteAfterCommit(Long userId, Long itemId) {
+        Runnable record = () -> {
+            if (viewDeduplicator.isUnique(itemId, "f:" + userId)) {
+                trendingService.recordFavorite(itemId);
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    record.run();
+                }
+            });
+        } else {
+            record.run();
         }
     }
 
+    /**
+     * Retrieves a page of the current user's favorites as slim cards
+     * (newest item IDs first, one query per page).
+     * @param cursor The nextCursor of the previous page, or null for the first page.
+     * @param size Page size (1..100).
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<ItemCardResponse> getFavoritesPage(String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        List<ItemCardView> rows = itemRepository.findFavoriteCards(
+                getCurrentUserId(), CursorPage.parseIdCursor(cursor), pageSize + 1);
+
+        boolean hasMore = rows.size() > pageSize;
+        Map<String, ImageVariants> variants = imageRenditionService.variantsFor(rows.stream()
+                .map(ItemCardView::getImage)
+                .filter(Objects::nonNull)
+                .toList());
+        List<ItemCardResponse> cards = rows.stream()
+                .limit(pageSize)
+                .map(row -> ItemCardResponse.builder()
+                        .id(row.getId())
+                        .title(row.getTitle())
+                        .image(row.getImage())
+                        .thumbnail(row.getImage() != null ? variants.get(row.getImage()).getThumbnail() : null)
+                        .shopId(row.getShopId())
+                        .shopName(row.getShopName())
+                        .build())
+                .toList();
+
+        return CursorPage.<ItemCardResponse>builder()
+                .items(cards)
+                .nextCursor(hasMore ? CursorPage.idCursor(cards.get(cards.size() - 1).getId()) : null)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    /**
+     * Returns which of the given item IDs are in the current user's favorites.
+     * Served from the per-user bitmap cache (one indexed query on a miss).
+     * @param itemIds IDs of the items shown on the page.
+     */
+    @Transactional(readOnly = true)
+    public List<Long> filterFavorites(List<Long> itemIds) {
+        return favoriteMembershipService.filterFavoriteItems(getCurrentUserId(), itemIds);
+    }
+
     /**
      * Removes an item from the current user's favorites.
      * @param itemId The ID of the item to remove.
      */
     @Transactional
     public void removeItemFromFavorites(Long itemId) {
-        User user = getCurrentUser();
-        Item item = itemRepository.findById(itemId)
-                .orElseThrow(() -> new ResourceNotFoundException("Item not found with ID: " + itemId));
+        Long userId = getCurrentUserId();
 
-        if (user.getFavorites().remove(item)) {
+        if (itemRepository.deleteFavorite(userId, itemId) == 1) {
             // Уменьшаем счетчик избранного у товара
-            item.setFavorites(item.getFavorites() - 1);
-            itemRepository.save(item);
-            userRepository.save(user);
+            itemRepository.adjustFavorites(itemId, -1);
+            favoriteMembershipService.invalidateItems(userId);
+        } else if (!itemRepository.existsById(itemId)) {
+            throw new ResourceNotFoundException("Item not found with ID: " + itemId);
         }
     }
 }
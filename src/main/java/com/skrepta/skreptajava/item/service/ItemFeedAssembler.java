@@ -0,0 +1,66 @@
+package com.skrepta.skreptajava.item.service;
+
+import com.skrepta.skreptajava.item.dto.ItemFeedResponse;
+import com.skrepta.skreptajava.item.repository.ItemFeedView;
+import com.skrepta.skreptajava.item.repository.ItemRepository;
+import com.skrepta.skreptajava.item.repository.ItemValueView;
+import com.skrepta.skreptajava.storage.dto.ImageVariants;
+import com.skrepta.skreptajava.storage.service.ImageRenditionService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Собирает карточки ленты из строк-проекций: картинки и теги
+ * догружаются двумя запросами на всю страницу, миниатюры - одним (или из кэша)
+ */
+@Component
+@RequiredArgsConstructor
+public class ItemFeedAssembler {
+
+    private final ItemRepository itemRepository;
+    private final ImageRenditionService imageRenditionService;
+
+    public List<ItemFeedResponse> assemble(List<ItemFeedView> rows) {
+        if (rows.isEmpty()) {
+            return List.of();
+        }
+
+        List<Long> ids = rows.stream().map(ItemFeedView::getId).toList();
+        Map<Long, List<String>> images = groupByItem(itemRepository.findImagesByItemIds(ids));
+        Map<Long, List<String>> tags = groupByItem(itemRepository.findTagsByItemIds(ids));
+        Map<String, ImageVariants> variants = imageRenditionService.variantsFor(
+                images.values().stream().flatMap(List::stream).toList());
+
+        return rows.stream()
+                .map(row -> ItemFeedResponse.builder()
+                        .id(row.getId())
+                        .title(row.getTitle())
+                        .images(images.getOrDefault(row.getId(), List.of()))
+                        .thumbnails(images.getOrDefault(row.getId(), List.of()).stream()
+                                .map(url -> variants.get(url).getThumbnail())
+                                .toList())
+                        .tags(tags.getOrDefault(row.getId(), List.of()))
+                        .city(row.getCity())
+                        .views(row.getViews())
+                        .favorites(row.getFavorites())
+                        .createdAt(row.getCreatedAt())
+                        .shopId(row.getShopId())
+                        .shopName(row.getShopName())
+                        .shopLogoUrl(row.getShopLogoUrl())
+                        .build())
+                .toList();
+    }
+
+    private static Map<Long, List<String>> groupByItem(List<ItemValueView> values) {
+        Map<Long, List<String>> grouped = new HashMap<>();
+        for (ItemValueView value : values) {
+            grouped.computeIfAbsent(value.getItemId(), id -> new ArrayList<>()).add(value.getValue());
+        }
+        return grouped;
+    }
+}
@@ -4,25 +4,38 @@ import com.skrepta.skreptajava.auth.entity.User;
 import com.skrepta.skreptajava.auth.exception.ResourceNotFoundException;
 import com.skrepta.skreptajava.auth.repository.UserRepository;
 import com.skrepta.skreptajava.config.FileStorageService;
+import com.skrepta.skreptajava.item.dto.CursorPage;
+import com.skrepta.skreptajava.item.dto.ItemFeedResponse;
 import com.skrepta.skreptajava.item.dto.ItemRequest;
 import com.skrepta.skreptajava.item.dto.ItemResponse;
+import com.skrepta.skreptajava.item.dto.ItemViewsResponse;
 import com.skrepta.skreptajava.item.entity.Item;
+import com.skrepta.skreptajava.item.repository.ItemFeedView;
 import com.skrepta.skreptajava.item.repository.ItemRepository;
 import com.skrepta.skreptajava.shop.entity.Shop;
 import com.skrepta.skreptajava.shop.repository.ShopRepository;
 import com.skrepta.skreptajava.shop.service.ShopService;
+import com.skrepta.skreptajava.smartsearch.service.BinaryQuantizedIndex;
 import com.skrepta.skreptajava.smartsearch.service.IndexingService;
+import com.skrepta.skreptajava.smartsearch.service.SuggestionService;
+import com.skrepta.skreptajava.storage.dto.ImageVariants;
+import com.skrepta.skreptajava.storage.service.ImageRenditionService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.IOException;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -36,17 +49,39 @@ public class ItemService {
     private final FileStorageService fileStorageService;
     private final ShopService shopService;
     private final IndexingService indexingService; // ✅ ДОБАВЛЕНО
-
-    @Transactional
-    public ItemResponse createItem(Long shopId, ItemRequest request) throws IOException {
-        Shop shop = shopRepository.findById(shopId)
-                .orElseThrow(() -> new ResourceNotFoundException("Shop not found with ID: " + shopId));
-
-        User currentUser = getCurrentUser();
-        checkShopOwnership(shop, currentUser);
+    private final SuggestionService suggestionService;
+    private final BinaryQuantizedIndex binaryQuantizedIndex;
+    private final ItemFeedAssembler itemFeedAssembler;
+    private final TrendingService trendingService;
+    private final ViewCounterService viewCounterService;
+    private final ViewDeduplicator viewDeduplicator;
+    private final TransactionTemplate transactionTemplate;
+    private final ImageRenditionService imageRenditionService;
+
+    private static final int MAX_FEED_PAGE_SIZE = 100;
+
+    /**
+     * Создание товара в три шага: проверка прав (короткая транзакция),
+     * параллельная загрузка фото без транзакции, запись товара.
+     * Соединение с БД не держится, пока идут PUT в S3.
+     */
+    public ItemResponse createItem(Long shopId, ItemRequest request) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Shop shop = shopRepository.findById(shopId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Shop not found with ID: " + shopId));
+            checkShopOwnership(shop, getCurrentUser());
+        });
 
         List<String> imageUrls = uploadImages(request.getImageFiles());
 
+        return writeWithUploadedImages(imageUrls, () -> {
+            Shop shop = shopRepository.findById(shopId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Shop not found with ID: " + shopId));
+            return saveNewItem(shop, request, imageUrls);
+        });
+    }
+
+    private ItemResponse saveNewItem(Shop shop, ItemRequest request, List<String> imageUrls) {
         Item item = Item.builder()
                 .shop(shop)
                 .title(request.getTitle())
@@ -60,32 +95,43 @@ public class ItemService {
                 .build();
 
         Item savedItem = itemRepository.save(item);
-        
-        // ✅ АВТОМАТИЧЕСКАЯ ИНДЕКСАЦИЯ
-        try {
-            indexingService.indexItem(savedItem);
-            log.info("Item {} automatically indexed for search", savedItem.getId());
-        } catch (Exception e) {
-            log.error("Failed to auto-index item {}: {}", savedItem.getId(), e.getMessage());
-        }
+        suggestionService.updateItem(savedItem);
+        imageRenditionService.submitAfterCommit(imageUrls);
+        // Индексация (вызовы OpenAI) - в фоне после коммита, не внутри транзакции записи
+        indexingService.indexItemAfterCommit(savedItem.getId());
 
         return mapToResponse(savedItem);
     }
 
-    @Transactional
-    public ItemResponse updateItem(Long itemId, ItemRequest request) throws IOException {
-        Item item = itemRepository.findById(itemId)
-                .orElseThrow(() -> new ResourceNotFoundException("Item not found with ID: " + itemId));
-
-        User currentUser = getCurrentUser();
-        checkItemOwnership(item, currentUser);
-
-        if (request.getImageFiles() != null && !request.getImageFiles().isEmpty()) {
-            item.getImages().forEach(fileStorageService::deleteFile);
-            List<String> newImageUrls = uploadImages(request.getImageFiles());
-            item.setImages(newImageUrls);
-        }
+    /**
+     * Обновление товара: как и создание, новые фото загружаются
+     * между проверкой прав и транзакцией записи
+     */
+    public ItemResponse updateItem(Long itemId, ItemRequest request) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Item item = itemRepository.findById(itemId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Item not found with ID: " + itemId));
+            checkItemOwnership(item, getCurrentUser());
+        });
+
+        boolean replaceImages = request.getImageFiles() != null && !request.getImageFiles().isEmpty();
+        List<String> newImageUrls = replaceImages ? uploadImages(request.getImageFiles()) : List.of();
+
+        return writeWithUploadedImages(newImageUrls, () -> {
+            Item item = itemRepository.findById(itemId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Item not found with ID: " + itemId));
+            // Права проверяются ещё раз: за время загрузки товар мог сменить владельца
+            checkItemOwnership(item, getCurrentUser());
+            if (replaceImages) {
+                fileStorageService.deleteFiles(item.getImages());
+                item.setImages(newImageUrls);
+                imageRenditionService.submitAfterCommit(newImageUrls);
+            }
+            return saveUpdatedItem(item, request);
+        });
+    }
 
+    private ItemResponse saveUpdatedItem(Item item, ItemRequest request) {
         item.setTitle(request.getTitle());
         item.setDescription(request.getDescription());
         item.setTags(request.getTags());
@@ -93,18 +139,31 @@ public class ItemService {
         item.setUpdatedAt(Instant.now());
 
         Item updatedItem = itemRepository.save(item);
-        
-        // ✅ ПЕРЕИНДЕКСАЦИЯ ПОСЛЕ ОБНОВЛЕНИЯ
-        try {
-            indexingService.indexItem(updatedItem);
-            log.info("Item {} re-indexed after update", updatedItem.getId());
-        } catch (Exception e) {
-            log.error("Failed to re-index item {}: {}", updatedItem.getId(), e.getMessage());
-        }
+        suggestionService.updateItem(updatedItem);
+        indexingService.indexItemAfterCommit(updatedItem.getId());
 
         return mapToResponse(updatedItem);
     }
 
+    /**
+     * Добавляет к товару фото, загруженные напрямую в хранилище (см. UploadService)
+     */
+    @Transactional
+    public ItemResponse addUploadedImages(Long itemId, List<String> imageUrls) {
+        Item item = itemRepository.findById(itemId)
+                .orElseThrow(() -> new ResourceNotFoundException("Item not found with ID: " + itemId));
+        checkItemOwnership(item, getCurrentUser());
+
+        List<String> images = new ArrayList<>(item.getImages());
+        images.addAll(imageUrls);
+        item.setImages(images);
+        item.setUpdatedAt(Instant.now());
+
+        Item updatedItem = itemRepository.save(item);
+        imageRenditionService.submitAfterCommit(imageUrls);
+        return mapToResponse(updatedItem);
+    }
+
     @Transactional
     public void deleteItem(Long itemId) {
         Item item = itemRepository.findById(itemId)
@@ -113,8 +172,11 @@ public class ItemService {
         User currentUser = getCurrentUser();
         checkItemOwnership(item, currentUser);
 
-        item.getImages().forEach(fileStorageService::deleteFile);
+        fileStorageService.deleteFiles(item.getImages());
         itemRepository.delete(item);
+        suggestionService.removeItem(itemId);
+        binaryQuantizedIndex.remove(itemId);
+        viewCounterService.forget(itemId);
     }
 
     @Transactional(readOnly = true)
@@ -126,10 +188,43 @@ public class ItemService {
 
     @Transactional(readOnly = true)
     public List<ItemResponse> getAllActiveItems() {
-        return itemRepository.findAll().stream()
-                .filter(Item::isActive)
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+        return mapToResponses(itemRepository.findByIsActiveTrue());
+    }
+
+    /**
+     * Главная лента: активные товары от новых к старым, keyset-пагинация по (createdAt, id).
+     * Три запроса на страницу: товары с магазинами, картинки, теги.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<ItemFeedResponse> getFeed(String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_FEED_PAGE_SIZE));
+        // +1 строка, чтобы понять, есть ли следующая страница
+        PageRequest limit = PageRequest.of(0, pageSize + 1);
+
+        List<ItemFeedView> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = itemRepository.findFeedFirstPage(limit);
+        } else {
+            FeedCursor position = FeedCursor.decode(cursor);
+            rows = itemRepository.findFeedPageAfter(position.createdAt(), position.id(), limit);
+        }
+
+        boolean hasMore = rows.size() > pageSize;
+        if (hasMore) {
+            rows = rows.subList(0, pageSize);
+        }
+        if (rows.isEmpty()) {
+            return CursorPage.<ItemFeedResponse>builder().items(List.of()).hasMore(false).build();
+        }
+
+        List<ItemFeedResponse> items = itemFeedAssembler.assemble(rows);
+
+        ItemFeedView last = rows.get(rows.size() - 1);
+        return CursorPage.<ItemFeedResponse>builder()
+                .items(items)
+                .nextCursor(hasMore ? new FeedCursor(last.getCreatedAt(), last.getId()).encode() : null)
+                .hasMore(hasMore)
+                .build();
     }
 
     @Transactional
@@ -137,8 +232,11 @@ public class ItemService {
         Item item = itemRepository.findById(itemId)
                 .orElseThrow(() -> new ResourceNotFoundException("Item not found with ID: " + itemId));
 
-        item.getImages().forEach(fileStorageService::deleteFile);
+        fileStorageService.deleteFiles(item.getImages());
         itemRepository.delete(item);
+        suggestionService.removeItem(itemId);
+        binaryQuantizedIndex.remove(itemId);
+        viewCounterService.forget(itemId);
     }
 
     @Transactional(readOnly = true)
@@ -146,21 +244,28 @@ public class ItemService {
         Shop shop = shopRepository.findById(shopId)
             .orElseThrow(() -> new ResourceNotFoundException("Shop not found with id: " + shopId));
 
-        List<Item> items = itemRepository.findByShopId(shopId);
+        return mapToResponses(itemRepository.findByShopIdAndIsActive(shopId, true));
+    }
 
-        return items.stream()
-            .filter(Item::isActive)
-            .map(this::mapToResponse)
-            .collect(Collectors.toList());
+    public void incrementItemView(Long itemId, String clientFingerprint) {
+        // Сначала 404 для несуществующих ID: иначе случайные ID забивали бы Bloom-фильтры
+        viewCounterService.requireItem(itemId);
+        boolean unique = viewDeduplicator.isUnique(itemId, clientFingerprint);
+        viewCounterService.increment(itemId, unique);
+        if (unique) {
+            trendingService.recordView(itemId);
+        }
     }
 
-    @Transactional
-    public void incrementItemView(Long itemId) {
+    @Transactional(readOnly = true)
+    public ItemViewsResponse getItemViews(Long itemId) {
         Item item = itemRepository.findById(itemId)
                 .orElseThrow(() -> new ResourceNotFoundException("Item not found with ID: " + itemId));
-        
-        item.setViews(item.getViews() + 1);
-        itemRepository.save(item);
+        return ItemViewsResponse.builder()
+                .itemId(itemId)
+                .uniqueViews(item.getViews() + viewCounterService.pendingViews(itemId))
+                .rawViews(item.getRawViews() + viewCounterService.pendingRawViews(itemId))
+                .build();
     }
 
     private User getCurrentUser() {
@@ -181,32 +286,53 @@ public class ItemService {
         }
     }
 
-    private List<String> uploadImages(List<MultipartFile> files) throws IOException {
-        if (files == null || files.isEmpty()) {
-            return List.of();
+    private List<String> uploadImages(List<MultipartFile> files) {
+        return fileStorageService.uploadFiles(files);
+    }
+
+    /**
+     * Транзакция записи после загрузки фото. Если запись не удалась,
+     * загруженные файлы больше никому не нужны - ставим их в очередь удаления.
+     */
+    private ItemResponse writeWithUploadedImages(List<String> uploadedUrls, Supplier<ItemResponse> write) {
+        try {
+            return transactionTemplate.execute(status -> write.get());
+        } catch (RuntimeException e) {
+            fileStorageService.deleteFiles(uploadedUrls);
+            throw e;
         }
-        return files.stream()
-                .map(file -> {
-                    try {
-                        return fileStorageService.uploadFile(file);
-                    } catch (IOException e) {
-                        throw new RuntimeException("Failed to upload file to storage.", e);
-                    }
-                })
-                .collect(Collectors.toList());
     }
 
     public ItemResponse mapToResponse(Item item) {
+        return mapToResponse(item, imageRenditionService.variantsFor(item.getImages()));
+    }
+
+    /**
+     * Список товаров: копии фото всей выборки - одним обращением к кэшу/БД,
+     * как в ленте (ItemFeedAssembler)
+     */
+    public List<ItemResponse> mapToResponses(Collection<Item> items) {
+        Map<String, ImageVariants> variants = imageRenditionService.variantsFor(items.stream()
+                .flatMap(item -> item.getImages().stream())
+                .distinct()
+                .toList());
+        return items.stream()
+                .map(item -> mapToResponse(item, variants))
+                .collect(Collectors.toList());
+    }
+
+    private ItemResponse mapToResponse(Item item, Map<String, ImageVariants> variants) {
         return ItemResponse.builder()
                 .id(item.getId())
                 .shop(shopService.getShopById(item.getShop().getId()))
                 .title(item.getTitle())
                 .description(item.getDescription())
                 .images(item.getImages())
+                .imageVariants(item.getImages().stream().map(variants::get).toList())
                 .tags(item.getTags())
                 .city(item.getCity())
                 .isActive(item.isActive())
-                .views(item.getViews())
+                .views(item.getViews() + (int) viewCounterService.pendingViews(item.getId()))
                 .favorites(item.getFavorites())
                 .createdAt(item.getCreatedAt())
                 .updatedAt(item.getUpdatedAt())
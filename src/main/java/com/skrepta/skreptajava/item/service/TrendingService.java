@@ -0,0 +1,190 @@
+package com.skrepta.skreptajava.item.service;
+
+import com.skrepta.skreptajava.item.dto.ItemFeedResponse;
+import com.skrepta.skreptajava.item.repository.ItemFeedView;
+import com.skrepta.skreptajava.item.repository.ItemRepository;
+import com.skrepta.skreptajava.item.repository.ItemStatsView;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Популярные сейчас товары.
+ * Каждый просмотр и добавление в избранное добавляет товару вес, который
+ * экспоненциально затухает с периодом полураспада trending.half-life-hours.
+ * Фоновая задача раз в несколько минут собирает готовый top-N,
+ * поэтому /api/items/trending только читает снимок.
+ */
+@Slf4j
+@Service
+public class TrendingService {
+
+    private static final double VIEW_WEIGHT = 1.0;
+    private static final double FAVORITE_WEIGHT = 5.0;
+    // Когда множитель времени становится слишком большим, пересчитываем все очки к новой точке отсчёта
+    private static final double MAX_EXPONENT = 50.0;
+    // Очки ниже этого (в масштабе текущего момента) удаляются, чтобы карта не росла бесконечно
+    private static final double MIN_SCORE = 0.01;
+
+    private final ItemRepository itemRepository;
+    private final ItemFeedAssembler itemFeedAssembler;
+    private final double decayPerHour;
+    private final int size;
+
+    /**
+     * Очки хранятся приведёнными к точке отсчёта epoch: событие в момент t весит
+     * weight * e^(λ(t - epoch)). Так ничего не нужно пересчитывать при затухании,
+     * а порядок товаров совпадает с порядком по текущему затухшему счёту.
+     */
+    private final Map<Long, Double> scores = new ConcurrentHashMap<>();
+    private final ReadWriteLock rebaseLock = new ReentrantReadWriteLock();
+    private volatile Instant epoch = Instant.now();
+
+    private volatile List<ItemFeedResponse> snapshot = List.of();
+
+    public TrendingService(
+            ItemRepository itemRepository,
+            ItemFeedAssembler itemFeedAssembler,
+            @Value("${trending.half-life-hours:24}") double halfLifeHours,
+            @Value("${trending.size:100}") int size
+    ) {
+        this.itemRepository = itemRepository;
+        this.itemFeedAssembler = itemFeedAssembler;
+        this.decayPerHour = Math.log(2) / halfLifeHours;
+        this.size = size;
+    }
+
+    public void recordView(Long itemId) {
+        record(itemId, VIEW_WEIGHT, Instant.now());
+    }
+
+    public void recordFavorite(Long itemId) {
+        record(itemId, FAVORITE_WEIGHT, Instant.now());
+    }
+
+    /**
+     * Текущий top-N (без запросов к БД)
+     */
+    public List<ItemFeedResponse> getTrending(int limit) {
+        List<ItemFeedResponse> current = snapshot;
+        return current.subList(0, Math.max(0, Math.min(limit, current.size())));
+    }
+
+    /**
+     * Начальные очки по накопленным счётчикам: считаем, что они набраны
+     * в момент создания товара, поэтому старые товары начинают с малого веса
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        try {
+            List<ItemStatsView> stats = itemRepository.findTrendingSeed();
+            for (ItemStatsView item : stats) {
+                double weight = item.getViews() * VIEW_WEIGHT + item.getFavorites() * FAVORITE_WEIGHT;
+                Instant createdAt = item.getCreatedAt() != null ? item.getCreatedAt() : epoch;
+                record(item.getId(), weight, createdAt);
+            }
+            log.info("Trending scores seeded for {} items", stats.size());
+        } catch (Exception e) {
+            log.error("Failed to seed trending scores: {}", e.getMessage());
+        }
+        refresh();
+    }
+
+    @Scheduled(initialDelayString = "${trending.refresh-ms:300000}", fixedDelayString = "${trending.refresh-ms:300000}")
+    public void refresh() {
+        try {
+            long startTime = System.currentTimeMillis();
+            rebaseIfNeeded();
+
+            List<Long> topIds = topIds();
+            if (topIds.isEmpty()) {
+                snapshot = List.of();
+                return;
+            }
+
+            // Неактивные и удалённые товары отсеиваются запросом
+            Map<Long, ItemFeedView> rows = new HashMap<>();
+            for (ItemFeedView row : itemRepository.findFeedByIds(topIds)) {
+                rows.put(row.getId(), row);
+            }
+            List<ItemFeedView> ordered = new ArrayList<>(rows.size());
+            for (Long id : topIds) {
+                ItemFeedView row = rows.get(id);
+                if (row != null) {
+                    ordered.add(row);
+                } else {
+                    scores.remove(id);
+                }
+            }
+
+            snapshot = List.copyOf(itemFeedAssembler.assemble(ordered));
+            log.debug("Trending refreshed in {}ms: {} items", System.currentTimeMillis() - startTime, ordered.size());
+        } catch (Exception e) {
+            log.error("Failed to refresh trending items: {}", e.getMessage());
+        }
+    }
+
+    private void record(Long itemId, double weight, Instant at) {
+        if (itemId == null || weight <= 0) return;
+        rebaseLock.readLock().lock();
+        try {
+            scores.merge(itemId, weight * Math.exp(decayPerHour * hoursSinceEpoch(at)), Double::sum);
+        } finally {
+            rebaseLock.readLock().unlock();
+        }
+    }
+
+    private List<Long> topIds() {
+        PriorityQueue<Map.Entry<Long, Double>> heap =
+                new PriorityQueue<>(size + 1, Map.Entry.comparingByValue());
+        for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+            heap.offer(Map.entry(entry.getKey(), entry.getValue()));
+            if (heap.size() > size) {
+                heap.poll();
+            }
+        }
+        List<Map.Entry<Long, Double>> top = new ArrayList<>(heap);
+        top.sort(Map.Entry.<Long, Double>comparingByValue(Comparator.reverseOrder()));
+        return top.stream().map(Map.Entry::getKey).toList();
+    }
+
+    /**
+     * Переносит точку отсчёта на "сейчас", пока множители не переполнили double,
+     * и заодно выбрасывает затухшие товары
+     */
+    private void rebaseIfNeeded() {
+        Instant now = Instant.now();
+        double exponent = decayPerHour * hoursSinceEpoch(now);
+        if (exponent < MAX_EXPONENT && scores.size() < size * 100) {
+            return;
+        }
+
+        rebaseLock.writeLock().lock();
+        try {
+            double factor = Math.exp(-decayPerHour * hoursSinceEpoch(now));
+            scores.replaceAll((id, score) -> score * factor);
+            scores.values().removeIf(score -> score < MIN_SCORE);
+            epoch = now;
+        } finally {
+            rebaseLock.writeLock().unlock();
+        }
+    }
+
+    private double hoursSinceEpoch(Instant at) {
+        return (at.toEpochMilli() - epoch.toEpochMilli()) / 3_600_000.0;
+    }
+}
@@ -0,0 +1,162 @@
+package com.skrepta.skreptajava.item.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.skrepta.skreptajava.auth.exception.ResourceNotFoundException;
+import com.skrepta.skreptajava.item.repository.ItemRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Буферизованный счётчик просмотров (write-behind).
+ * Просмотр - это инкремент LongAdder в памяти без обращения к БД;
+ * накопленные значения периодически сбрасываются одним пакетным UPDATE
+ * и при остановке приложения.
+ * Считаются все просмотры (raw_views) и уникальные по клиенту (views).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ViewCounterService {
+
+    private final ItemRepository itemRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    // Несброшенные просмотры по ID товара. Счётчики не удаляются при сбросе:
+    // иначе инкремент, успевший взять ссылку на удалённый счётчик, потерялся бы.
+    // Размер ограничен числом существующих товаров.
+    private final Map<Long, Counters> pending = new ConcurrentHashMap<>();
+
+    // Известные существующие товары, чтобы не ходить в БД на каждый просмотр
+    private final Cache<Long, Boolean> knownItems = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterWrite(Duration.ofMinutes(10))
+            .build();
+
+    /**
+     * 404 для несуществующего товара (проверка кэшируется)
+     */
+    public void requireItem(Long itemId) {
+        if (knownItems.getIfPresent(itemId) == null) {
+            if (!itemRepository.existsById(itemId)) {
+                throw new ResourceNotFoundException("Item not found with ID: " + itemId);
+            }
+            knownItems.put(itemId, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Учитывает просмотр товара, уже проверенного через {@link #requireItem(Long)}
+     * @param unique первый ли это просмотр товара данным клиентом в окне дедупликации
+     */
+    public void increment(Long itemId, boolean unique) {
+        Counters counters = pending.computeIfAbsent(itemId, id -> new Counters());
+        counters.raw.increment();
+        if (unique) {
+            counters.unique.increment();
+        }
+    }
+
+    /**
+     * Уникальные просмотры, ещё не записанные в БД (добавляются к значению из БД в ответах)
+     */
+    public long pendingViews(Long itemId) {
+        Counters counters = pending.get(itemId);
+        return counters != null ? counters.unique.sum() : 0;
+    }
+
+    /**
+     * Все просмотры, ещё не записанные в БД
+     */
+    public long pendingRawViews(Long itemId) {
+        Counters counters = pending.get(itemId);
+        return counters != null ? counters.raw.sum() : 0;
+    }
+
+    /**
+     * Товар удалён: его просмотры больше не нужны. Выполняется после коммита
+     * удаления (без транзакции - сразу): при откате несброшенные просмотры сохраняются.
+     */
+    public void forget(Long itemId) {
+        afterCommit(() -> {
+            knownItems.invalidate(itemId);
+            pending.remove(itemId);
+        });
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    @Scheduled(initialDelayString = "${items.views.flush-ms:5000}", fixedDelayString = "${items.views.flush-ms:5000}")
+    public void scheduledFlush() {
+        flush();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * Сбрасывает накопленные просмотры в БД одним пакетом.
+     * sumThenReset обнуляет ячейки через getAndSet, поэтому параллельные
+     * инкременты попадают либо в этот пакет, либо в следующий.
+     */
+    public synchronized int flush() {
+        List<Object[]> batch = new ArrayList<>();
+        for (Map.Entry<Long, Counters> entry : pending.entrySet()) {
+            long unique = entry.getValue().unique.sumThenReset();
+            long raw = entry.getValue().raw.sumThenReset();
+            if (raw > 0 || unique > 0) {
+                batch.add(new Object[]{unique, raw, entry.getKey()});
+            }
+        }
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            jdbcTemplate.batchUpdate(
+                    "UPDATE items SET views = views + ?, raw_views = raw_views + ? WHERE id = ?", batch);
+            log.debug("Flushed views for {} items", batch.size());
+            return batch.size();
+        } catch (Exception e) {
+            // Возвращаем в буфер, запишутся при следующем сбросе
+            for (Object[] row : batch) {
+                Counters counters = pending.computeIfAbsent((Long) row[2], id -> new Counters());
+                counters.unique.add((Long) row[0]);
+                counters.raw.add((Long) row[1]);
+            }
+            log.error("Failed to flush views for {} items: {}", batch.size(), e.getMessage());
+            return 0;
+        }
+    }
+
+    private static final class Counters {
+        private final LongAdder unique = new LongAdder();
+        private final LongAdder raw = new LongAdder();
+    }
+}
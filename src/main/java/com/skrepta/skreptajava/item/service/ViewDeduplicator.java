@@ -0,0 +1,82 @@
+package com.skrepta.skreptajava.item.service;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Отсев повторных просмотров (обновление страницы, боты).
+ * Пары (товар, отпечаток клиента) хранятся в двух Bloom-фильтрах: текущее окно
+ * и предыдущее. При ротации предыдущее выбрасывается, поэтому память
+ * фиксирована, а повтор в течение 1-2 окон считается тем же просмотром.
+ * Ложные срабатывания (уникальный просмотр принят за повтор) - около fpp.
+ * Тем же окном отсеиваются повторные добавления в избранное для трендов
+ * (отпечаток "f:" + ID пользователя, см. FavoritesService).
+ */
+@Slf4j
+@Service
+public class ViewDeduplicator {
+
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private final int expectedViewsPerWindow;
+
+    private volatile BloomFilter<CharSequence> current;
+    private volatile BloomFilter<CharSequence> previous;
+
+    public ViewDeduplicator(@Value("${items.views.dedup-expected-per-window:1000000}") int expectedViewsPerWindow) {
+        this.expectedViewsPerWindow = expectedViewsPerWindow;
+        this.current = newFilter();
+        this.previous = newFilter();
+    }
+
+    /**
+     * true, если этот клиент ещё не смотрел товар в текущем или предыдущем окне
+     */
+    public boolean isUnique(Long itemId, String fingerprint) {
+        String key = itemId + "|" + fingerprint;
+        if (previous.mightContain(key)) {
+            current.put(key);
+            return false;
+        }
+        // put возвращает false, если все биты уже стояли - ключ (вероятно) уже был
+        return current.put(key);
+    }
+
+    @Scheduled(initialDelayString = "${items.views.dedup-window-ms:1800000}", fixedDelayString = "${items.views.dedup-window-ms:1800000}")
+    public void rotate() {
+        previous = current;
+        current = newFilter();
+        log.debug("View dedup window rotated");
+    }
+
+    /**
+     * Отпечаток клиента: пользователь, если он вошёл, иначе IP и User-Agent.
+     * IP берётся из getRemoteAddr(): X-Forwarded-For разбирает Tomcat (server.forward-headers-strategy)
+     * и только от доверенных прокси, иначе клиент подставлял бы случайный адрес на каждый запрос.
+     */
+    public String fingerprint(HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated()
+                && !(authentication instanceof AnonymousAuthenticationToken)) {
+            return "u:" + authentication.getName();
+        }
+
+        String ip = request.getRemoteAddr();
+        String userAgent = request.getHeader("User-Agent");
+        return "a:" + ip + "|" + (userAgent != null ? userAgent : "");
+    }
+
+    private BloomFilter<CharSequence> newFilter() {
+        return BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), expectedViewsPerWindow, FALSE_POSITIVE_RATE);
+    }
+}
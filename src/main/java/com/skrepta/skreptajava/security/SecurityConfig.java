@@ -57,22 +57,30 @@ public class SecurityConfig {
                         
                         // Health check and error pages
                         .requestMatchers("/", "/error").permitAll()
+
+                        // Файлы локального хранилища (storage.backend=filesystem)
+                        .requestMatchers("GET", "/files/**").permitAll()
                         
                         // READ-ONLY PUBLIC endpoints
                         .requestMatchers(
                                 "GET",
                                 "/api/shops",
+                                "/api/shops/page",
                                 "/api/shops/{id}",
                                 "/api/shops/{shopId}/items",
                                 "/api/items",
+                                "/api/items/feed",
+                                "/api/items/trending",
                                 "/api/items/{id}",
+                                "/api/items/{id}/views",
                                 "/api/categories"
                         ).permitAll()
                         
                         // ✅ НОВОЕ: Публичный поиск (GET и POST)
                         .requestMatchers(
                                 "GET",
-                                "/api/search"
+                                "/api/search",
+                                "/api/search/suggest"
                         ).permitAll()
                         .requestMatchers(
                                 "POST",
@@ -1,5 +1,7 @@
 package com.skrepta.skreptajava.shop.controller;
 
+import com.skrepta.skreptajava.item.dto.CursorPage;
+import com.skrepta.skreptajava.shop.dto.ShopListResponse;
 import com.skrepta.skreptajava.shop.dto.ShopRequest;
 import com.skrepta.skreptajava.shop.dto.ShopResponse;
 import com.skrepta.skreptajava.shop.service.ShopService;
@@ -26,11 +28,24 @@ public class ShopController {
         return new ResponseEntity<>(shopService.createShop(request), HttpStatus.CREATED);
     }
 
+    // ?categoryId= - только магазины этой категории и её подкатегорий
     @GetMapping
-    public ResponseEntity<List<ShopResponse>> getAllShops() {
+    public ResponseEntity<List<ShopResponse>> getAllShops(@RequestParam(required = false) Long categoryId) {
+        if (categoryId != null) {
+            return ResponseEntity.ok(shopService.getApprovedShopsInCategory(categoryId));
+        }
         return ResponseEntity.ok(shopService.getAllApprovedShops());
     }
 
+    // Каталог постранично: одобренные магазины лёгкими строками
+    @GetMapping("/page")
+    public ResponseEntity<CursorPage<ShopListResponse>> getShopsPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size
+    ) {
+        return ResponseEntity.ok(shopService.getShopsPage(true, cursor, size));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<ShopResponse> getShopById(@PathVariable Long id) {
         return ResponseEntity.ok(shopService.getShopById(id));
@@ -1,7 +1,12 @@
 package com.skrepta.skreptajava.shop.controller;
 
+import com.skrepta.skreptajava.item.dto.CursorPage;
+import com.skrepta.skreptajava.item.dto.FavoriteCheckRequest;
+import com.skrepta.skreptajava.item.dto.FavoriteCheckResponse;
+import com.skrepta.skreptajava.shop.dto.ShopCardResponse;
 import com.skrepta.skreptajava.shop.dto.ShopResponse;
 import com.skrepta.skreptajava.shop.service.ShopFavoritesService;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -25,6 +30,27 @@ public class ShopFavoritesController {
         return ResponseEntity.ok(shopFavoritesService.getFavoriteShops());
     }
 
+    /**
+     * Избранные магазины постранично, лёгкими карточками
+     */
+    @GetMapping("/page")
+    @PreAuthorize("hasAnyRole('USER', 'SHOP', 'ADMIN')")
+    public ResponseEntity<CursorPage<ShopCardResponse>> getFavoriteShopsPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size
+    ) {
+        return ResponseEntity.ok(shopFavoritesService.getFavoriteShopsPage(cursor, size));
+    }
+
+    /**
+     * Какие из переданных магазинов в избранном (одним запросом для списка)
+     */
+    @PostMapping("/check")
+    @PreAuthorize("hasAnyRole('USER', 'SHOP', 'ADMIN')")
+    public ResponseEntity<FavoriteCheckResponse> checkFavoriteShops(@Valid @RequestBody FavoriteCheckRequest request) {
+        return ResponseEntity.ok(new FavoriteCheckResponse(shopFavoritesService.filterFavoriteShops(request.getIds())));
+    }
+
     /**
      * Добавить магазин в избранное
      */
@@ -0,0 +1,16 @@
+package com.skrepta.skreptajava.shop.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Лёгкая карточка магазина для списков (избранное)
+ */
+@Data
+@Builder
+public class ShopCardResponse {
+    private Long id;
+    private String name;
+    private String logoUrl;
+    private String city;
+}
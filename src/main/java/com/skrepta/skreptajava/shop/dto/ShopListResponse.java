@@ -0,0 +1,24 @@
+package com.skrepta.skreptajava.shop.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * Магазин в постраничном списке (каталог, модерация) - без описания, контактов и категорий
+ */
+@Data
+@Builder
+public class ShopListResponse {
+    private Long id;
+    private String name;
+    private String logoUrl;
+    private String city;
+    private double rating;
+    private boolean isApproved;
+    private int favoritesCount;
+    private Instant createdAt;
+    private Long ownerId;
+    private String ownerEmail;
+}
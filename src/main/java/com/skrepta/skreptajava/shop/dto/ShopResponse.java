@@ -16,6 +16,8 @@ public class ShopResponse {
     private String name;
     private String description;
     private String logoUrl;
+    // Уменьшенный логотип для списков; пока не готов - тот же logoUrl
+    private String logoThumbnailUrl;
     private String phone;
     private String instagramLink;
     private String city;
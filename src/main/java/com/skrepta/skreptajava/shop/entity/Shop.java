@@ -22,7 +22,10 @@ import org.hibernate.annotations.Type;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "shops")
+@Table(name = "shops", indexes = {
+        // Списки магазинов: фильтр по статусу модерации + keyset по id
+        @Index(name = "idx_shops_approved_id", columnList = "is_approved, id")
+})
 public class Shop {
 
     @Id
@@ -57,7 +60,9 @@ public class Shop {
     @JoinTable(
         name = "shop_categories",
         joinColumns = @JoinColumn(name = "shop_id"),
-        inverseJoinColumns = @JoinColumn(name = "category_id")
+        inverseJoinColumns = @JoinColumn(name = "category_id"),
+        // Поиск магазинов по категории (фильтр по поддереву) идёт от category_id
+        indexes = @Index(name = "idx_shop_categories_category", columnList = "category_id, shop_id")
     )
     private Set<Category> categories = new HashSet<>();
 
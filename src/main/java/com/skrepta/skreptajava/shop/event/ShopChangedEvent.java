@@ -0,0 +1,8 @@
+package com.skrepta.skreptajava.shop.event;
+
+/**
+ * Магазин изменён или удалён (данные, статус, логотип, счётчик избранного).
+ * Публикуется внутри транзакции, слушатели реагируют после коммита.
+ */
+public record ShopChangedEvent(Long shopId) {
+}
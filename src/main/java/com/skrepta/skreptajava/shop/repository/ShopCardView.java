@@ -0,0 +1,11 @@
+package com.skrepta.skreptajava.shop.repository;
+
+/**
+ * Проекция карточки магазина
+ */
+public interface ShopCardView {
+    Long getId();
+    String getName();
+    String getLogoUrl();
+    String getCity();
+}
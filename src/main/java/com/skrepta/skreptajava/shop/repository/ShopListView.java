@@ -0,0 +1,19 @@
+package com.skrepta.skreptajava.shop.repository;
+
+import java.time.Instant;
+
+/**
+ * Строка списка магазинов: только колонки shops и owner, без категорий
+ */
+public interface ShopListView {
+    Long getId();
+    String getName();
+    String getLogoUrl();
+    String getCity();
+    Double getRating();
+    Boolean getIsApproved();
+    Integer getFavoritesCount();
+    Instant getCreatedAt();
+    Long getOwnerId();
+    String getOwnerEmail();
+}
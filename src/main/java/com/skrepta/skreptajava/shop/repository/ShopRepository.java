@@ -1,12 +1,99 @@
 package com.skrepta.skreptajava.shop.repository;
 
 import com.skrepta.skreptajava.shop.entity.Shop;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface ShopRepository extends JpaRepository<Shop, Long> {
     List<Shop> findByOwnerId(Long ownerId);
+
+    // ============================================
+    // Списки: фильтр в SQL, owner и категории одним запросом
+    // ============================================
+
+    @EntityGraph(attributePaths = {"owner", "categories"})
+    List<Shop> findByIsApproved(boolean isApproved, Sort sort);
+
+    @EntityGraph(attributePaths = {"owner", "categories"})
+    List<Shop> findAllBy(Sort sort);
+
+    // Одобренные магазины хотя бы из одной категории (список ID - уже развёрнутое поддерево)
+    @EntityGraph(attributePaths = {"owner", "categories"})
+    @Query("SELECT DISTINCT s FROM Shop s JOIN s.categories c WHERE s.isApproved = true AND c.id IN :categoryIds")
+    List<Shop> findApprovedByCategoryIds(@Param("categoryIds") Collection<Long> categoryIds);
+
+    // Keyset по id: следующая страница - id меньше последнего
+    @Query("""
+            SELECT s.id AS id, s.name AS name, s.logoUrl AS logoUrl, s.city AS city, s.rating AS rating,
+                   s.isApproved AS isApproved, s.favoritesCount AS favoritesCount, s.createdAt AS createdAt,
+                   o.id AS ownerId, o.email AS ownerEmail
+            FROM Shop s JOIN s.owner o
+            WHERE s.isApproved = :approved AND s.id < :beforeId
+            ORDER BY s.id DESC
+            """)
+    List<ShopListView> findListPage(@Param("approved") boolean approved,
+                                    @Param("beforeId") Long beforeId,
+                                    Pageable pageable);
+
+    @Query("""
+            SELECT s.id AS id, s.name AS name, s.logoUrl AS logoUrl, s.city AS city, s.rating AS rating,
+                   s.isApproved AS isApproved, s.favoritesCount AS favoritesCount, s.createdAt AS createdAt,
+                   o.id AS ownerId, o.email AS ownerEmail
+            FROM Shop s JOIN s.owner o
+            WHERE s.id < :beforeId
+            ORDER BY s.id DESC
+            """)
+    List<ShopListView> findListPageAll(@Param("beforeId") Long beforeId, Pageable pageable);
+
+    // ============================================
+    // Избранное: атомарные операции без загрузки сущностей
+    // ============================================
+
+    // Вставка только для существующего магазина; 0 - магазина нет или он уже в избранном
+    @Modifying
+    @Query(value = """
+            INSERT INTO user_favorite_shops (user_id, shop_id)
+            SELECT :userId, s.id FROM shops s WHERE s.id = :shopId
+            ON CONFLICT DO NOTHING
+            """, nativeQuery = true)
+    int insertFavorite(@Param("userId") Long userId, @Param("shopId") Long shopId);
+
+    @Modifying
+    @Query(value = "DELETE FROM user_favorite_shops WHERE user_id = :userId AND shop_id = :shopId", nativeQuery = true)
+    int deleteFavorite(@Param("userId") Long userId, @Param("shopId") Long shopId);
+
+    // ID избранных магазинов пользователя (по первичному ключу user_favorite_shops)
+    @Query(value = "SELECT shop_id FROM user_favorite_shops WHERE user_id = :userId", nativeQuery = true)
+    List<Long> findFavoriteShopIds(@Param("userId") Long userId);
+
+    @Modifying
+    @Query(value = """
+            UPDATE shops SET favorites_count = GREATEST(COALESCE(favorites_count, 0) + :delta, 0)
+            WHERE id = :shopId
+            """, nativeQuery = true)
+    int adjustFavoritesCount(@Param("shopId") Long shopId, @Param("delta") int delta);
+
+    // Избранные магазины пользователя карточками, keyset по id (одна страница - один запрос).
+    // Алиасы в кавычках: PostgreSQL иначе приводит их к нижнему регистру
+    @Query(value = """
+            SELECT s.id AS "id", s.name AS "name", s.logo_url AS "logoUrl", s.city AS "city"
+            FROM user_favorite_shops f
+            JOIN shops s ON s.id = f.shop_id
+            WHERE f.user_id = :userId AND s.id < :beforeId
+            ORDER BY s.id DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<ShopCardView> findFavoriteCards(@Param("userId") Long userId,
+                                         @Param("beforeId") Long beforeId,
+                                         @Param("limit") int limit);
 }
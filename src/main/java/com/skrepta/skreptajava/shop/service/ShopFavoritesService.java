@@ -3,10 +3,15 @@ package com.skrepta.skreptajava.shop.service;
 import com.skrepta.skreptajava.auth.entity.User;
 import com.skrepta.skreptajava.auth.exception.ResourceNotFoundException;
 import com.skrepta.skreptajava.auth.repository.UserRepository;
+import com.skrepta.skreptajava.item.dto.CursorPage;
+import com.skrepta.skreptajava.item.service.FavoriteMembershipService;
+import com.skrepta.skreptajava.shop.dto.ShopCardResponse;
 import com.skrepta.skreptajava.shop.dto.ShopResponse;
-import com.skrepta.skreptajava.shop.entity.Shop;
+import com.skrepta.skreptajava.shop.event.ShopChangedEvent;
+import com.skrepta.skreptajava.shop.repository.ShopCardView;
 import com.skrepta.skreptajava.shop.repository.ShopRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -21,6 +26,10 @@ public class ShopFavoritesService {
     private final UserRepository userRepository;
     private final ShopRepository shopRepository;
     private final ShopService shopService;
+    private final FavoriteMembershipService favoriteMembershipService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private static final int MAX_PAGE_SIZE = 100;
 
     private User getCurrentUser() {
         String email = SecurityContextHolder.getContext().getAuthentication().getName();
@@ -28,6 +37,15 @@ public class ShopFavoritesService {
                 .orElseThrow(() -> new ResourceNotFoundException("Authenticated user not found."));
     }
 
+    /**
+     * Только ID текущего пользователя (без загрузки сущности и её коллекций)
+     */
+    private Long getCurrentUserId() {
+        String email = SecurityContextHolder.getContext().getAuthentication().getName();
+        return userRepository.findIdByEmail(email)
+                .orElseThrow(() -> new ResourceNotFoundException("Authenticated user not found."));
+    }
+
     /**
      * Получить все избранные магазины текущего пользователя
      */
@@ -39,19 +57,47 @@ public class ShopFavoritesService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Страница избранных магазинов карточками (новые ID первыми, один запрос на страницу)
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<ShopCardResponse> getFavoriteShopsPage(String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        List<ShopCardView> rows = shopRepository.findFavoriteCards(
+                getCurrentUserId(), CursorPage.parseIdCursor(cursor), pageSize + 1);
+
+        boolean hasMore = rows.size() > pageSize;
+        List<ShopCardResponse> cards = rows.stream()
+                .limit(pageSize)
+                .map(row -> ShopCardResponse.builder()
+                        .id(row.getId())
+                        .name(row.getName())
+                        .logoUrl(row.getLogoUrl())
+                        .city(row.getCity())
+                        .build())
+                .toList();
+
+        return CursorPage.<ShopCardResponse>builder()
+                .items(cards)
+                .nextCursor(hasMore ? CursorPage.idCursor(cards.get(cards.size() - 1).getId()) : null)
+                .hasMore(hasMore)
+                .build();
+    }
+
     /**
      * Добавить магазин в избранное
+     * (один INSERT ... ON CONFLICT DO NOTHING и атомарный инкремент счётчика)
      */
     @Transactional
     public void addShopToFavorites(Long shopId) {
-        User user = getCurrentUser();
-        Shop shop = shopRepository.findById(shopId)
-                .orElseThrow(() -> new ResourceNotFoundException("Shop not found with ID: " + shopId));
+        Long userId = getCurrentUserId();
 
-        if (user.getFavoriteShops().add(shop)) {
-            shop.setFavoritesCount(shop.getFavoritesCount() + 1);
-            shopRepository.save(shop);
-            userRepository.save(user);
+        if (shopRepository.insertFavorite(userId, shopId) == 1) {
+            shopRepository.adjustFavoritesCount(shopId, 1);
+            eventPublisher.publishEvent(new ShopChangedEvent(shopId));
+            favoriteMembershipService.invalidateShops(userId);
+        } else if (!shopRepository.existsById(shopId)) {
+            throw new ResourceNotFoundException("Shop not found with ID: " + shopId);
         }
     }
 
@@ -60,14 +106,14 @@ public class ShopFavoritesService {
      */
     @Transactional
     public void removeShopFromFavorites(Long shopId) {
-        User user = getCurrentUser();
-        Shop shop = shopRepository.findById(shopId)
-                .orElseThrow(() -> new ResourceNotFoundException("Shop not found with ID: " + shopId));
+        Long userId = getCurrentUserId();
 
-        if (user.getFavoriteShops().remove(shop)) {
-            shop.setFavoritesCount(Math.max(0, shop.getFavoritesCount() - 1));
-            shopRepository.save(shop);
-            userRepository.save(user);
+        if (shopRepository.deleteFavorite(userId, shopId) == 1) {
+            shopRepository.adjustFavoritesCount(shopId, -1);
+            eventPublisher.publishEvent(new ShopChangedEvent(shopId));
+            favoriteMembershipService.invalidateShops(userId);
+        } else if (!shopRepository.existsById(shopId)) {
+            throw new ResourceNotFoundException("Shop not found with ID: " + shopId);
         }
     }
 
@@ -76,8 +122,14 @@ public class ShopFavoritesService {
      */
     @Transactional(readOnly = true)
     public boolean isShopInFavorites(Long shopId) {
-        User user = getCurrentUser();
-        return user.getFavoriteShops().stream()
-                .anyMatch(shop -> shop.getId().equals(shopId));
+        return favoriteMembershipService.isShopFavorite(getCurrentUserId(), shopId);
+    }
+
+    /**
+     * Какие из переданных магазинов в избранном (из кэша битовых карт)
+     */
+    @Transactional(readOnly = true)
+    public List<Long> filterFavoriteShops(List<Long> shopIds) {
+        return favoriteMembershipService.filterFavoriteShops(getCurrentUserId(), shopIds);
     }
 }
\ No newline at end of file
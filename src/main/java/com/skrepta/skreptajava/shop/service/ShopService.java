@@ -1,30 +1,55 @@
 package com.skrepta.skreptajava.shop.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import com.skrepta.skreptajava.auth.entity.User;
 import com.skrepta.skreptajava.auth.exception.ResourceNotFoundException;
 import com.skrepta.skreptajava.auth.repository.UserRepository;
 import com.skrepta.skreptajava.category.entity.Category;
+import com.skrepta.skreptajava.category.event.CategoryChangedEvent;
 import com.skrepta.skreptajava.category.repository.CategoryRepository;
+import com.skrepta.skreptajava.category.service.CategoryService;
 import com.skrepta.skreptajava.config.FileStorageService;
+import com.skrepta.skreptajava.item.dto.CursorPage;
+import com.skrepta.skreptajava.shop.dto.ShopListResponse;
 import com.skrepta.skreptajava.shop.dto.ShopRequest;
 import com.skrepta.skreptajava.shop.dto.ShopResponse;
 import com.skrepta.skreptajava.shop.entity.Shop;
+import com.skrepta.skreptajava.shop.event.ShopChangedEvent;
+import com.skrepta.skreptajava.shop.repository.ShopListView;
 import com.skrepta.skreptajava.shop.repository.ShopRepository;
 import com.skrepta.skreptajava.item.repository.ItemRepository;
-import com.skrepta.skreptajava.item.entity.Item;
+import com.skrepta.skreptajava.item.service.ViewCounterService;
 import com.skrepta.skreptajava.smartsearch.service.IndexingService;
+import com.skrepta.skreptajava.smartsearch.service.BinaryQuantizedIndex;
+import com.skrepta.skreptajava.smartsearch.service.SuggestionService;
+import com.skrepta.skreptajava.storage.dto.ImageVariants;
+import com.skrepta.skreptajava.storage.event.ImageRenditionsReadyEvent;
+import com.skrepta.skreptajava.storage.service.ImageRenditionService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
 import jakarta.persistence.EntityManager;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -36,10 +61,39 @@ public class ShopService {
     private final ShopRepository shopRepository;
     private final UserRepository userRepository;
     private final CategoryRepository categoryRepository;
+    private final CategoryService categoryService;
     private final FileStorageService fileStorageService;
     private final ItemRepository itemRepository;
     private final EntityManager entityManager;
     private final IndexingService indexingService; // ✅ ДОБАВЛЕНО
+    private final SuggestionService suggestionService;
+    private final BinaryQuantizedIndex binaryQuantizedIndex;
+    private final ViewCounterService viewCounterService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ImageRenditionService imageRenditionService;
+
+    private static final int MAX_PAGE_SIZE = 100;
+
+    // Порядок важен: сначала ссылки на товары, потом товары, потом ссылки на магазин и сам магазин
+    private static final List<String> SHOP_DELETE_STATEMENTS = List.of(
+            "DELETE FROM user_favorites WHERE item_id IN (SELECT id FROM items WHERE shop_id = :shopId)",
+            "DELETE FROM item_images WHERE item_id IN (SELECT id FROM items WHERE shop_id = :shopId)",
+            "DELETE FROM item_tags WHERE item_id IN (SELECT id FROM items WHERE shop_id = :shopId)",
+            "DELETE FROM item_field_embeddings WHERE item_id IN (SELECT id FROM items WHERE shop_id = :shopId)",
+            "DELETE FROM items WHERE shop_id = :shopId",
+            "DELETE FROM user_favorite_shops WHERE shop_id = :shopId",
+            "DELETE FROM shop_categories WHERE shop_id = :shopId",
+            "DELETE FROM shops WHERE id = :shopId");
+    private static final Sort NEWEST_FIRST = Sort.by(Sort.Direction.DESC, "createdAt", "id");
+
+    // Готовые ShopResponse по ID: их запрашивает каждая карточка товара.
+    // Сбрасываются событиями изменения магазина/категорий; TTL ограничивает
+    // устаревание данных владельца (профиль пользователя меняется в других сервисах).
+    private final Cache<Long, ShopResponse> shopCache = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(Duration.ofMinutes(10))
+            .recordStats()
+            .build();
 
     @Transactional
     public ShopResponse createShop(ShopRequest request) throws IOException {
@@ -77,6 +131,10 @@ public class ShopService {
                 .build();
 
         Shop savedShop = shopRepository.save(shop);
+        suggestionService.updateShop(savedShop);
+        if (logoUrl != null) {
+            imageRenditionService.submitAfterCommit(List.of(logoUrl));
+        }
         
         // ✅ АВТОМАТИЧЕСКАЯ ИНДЕКСАЦИЯ
         try {
@@ -105,6 +163,7 @@ public class ShopService {
             }
             String newLogoUrl = fileStorageService.uploadFile(request.getLogoFile());
             shop.setLogoUrl(newLogoUrl);
+            imageRenditionService.submitAfterCommit(List.of(newLogoUrl));
         }
 
         shop.setName(request.getName());
@@ -116,6 +175,8 @@ public class ShopService {
         shop.setCategories(categories);
 
         Shop updatedShop = shopRepository.save(shop);
+        suggestionService.updateShop(updatedShop);
+        eventPublisher.publishEvent(new ShopChangedEvent(updatedShop.getId()));
         
         // ✅ ПЕРЕИНДЕКСАЦИЯ ПОСЛЕ ОБНОВЛЕНИЯ
         try {
@@ -128,6 +189,26 @@ public class ShopService {
         return mapToResponse(updatedShop);
     }
 
+    /**
+     * Новый логотип, загруженный напрямую в хранилище (см. UploadService); старый удаляется
+     */
+    @Transactional
+    public ShopResponse replaceLogo(Long shopId, String logoUrl) {
+        Shop shop = shopRepository.findById(shopId)
+                .orElseThrow(() -> new ResourceNotFoundException("Shop not found with ID: " + shopId));
+        checkPermission(shop, getCurrentUser());
+
+        if (shop.getLogoUrl() != null) {
+            fileStorageService.deleteFile(shop.getLogoUrl());
+        }
+        shop.setLogoUrl(logoUrl);
+
+        Shop updatedShop = shopRepository.save(shop);
+        eventPublisher.publishEvent(new ShopChangedEvent(updatedShop.getId()));
+        imageRenditionService.submitAfterCommit(List.of(logoUrl));
+        return mapToResponse(updatedShop);
+    }
+
     @Transactional
     public void deleteShop(Long shopId) {
         Shop shop = shopRepository.findById(shopId)
@@ -157,35 +238,74 @@ public class ShopService {
         deleteShopWithItems(shop);
     }
 
+    /**
+     * Удаление магазина целиком фиксированным набором запросов по shop_id,
+     * независимо от числа товаров. Файлы удаляются из S3 после коммита.
+     */
     private void deleteShopWithItems(Shop shop) {
-        List<Item> items = itemRepository.findByShopId(shop.getId());
-        
-        for (Item item : items) {
-            entityManager.createNativeQuery("DELETE FROM user_favorites WHERE item_id = :itemId")
-                    .setParameter("itemId", item.getId())
+        Long shopId = shop.getId();
+        List<Long> itemIds = itemRepository.findIdsByShopId(shopId);
+
+        List<String> fileUrls = new ArrayList<>(itemRepository.findImageUrlsByShopId(shopId));
+        if (shop.getLogoUrl() != null) {
+            fileUrls.add(shop.getLogoUrl());
+        }
+
+        entityManager.flush();
+        for (String sql : SHOP_DELETE_STATEMENTS) {
+            entityManager.createNativeQuery(sql)
+                    .setParameter("shopId", shopId)
                     .executeUpdate();
-            
-            if (item.getImages() != null) {
-                for (String imageUrl : item.getImages()) {
-                    fileStorageService.deleteFile(imageUrl);
-                }
-            }
-            
-            itemRepository.delete(item);
         }
+        // Загруженные сущности магазина и товаров больше не соответствуют БД
+        entityManager.clear();
 
-        if (shop.getLogoUrl() != null) {
-            fileStorageService.deleteFile(shop.getLogoUrl());
+        fileStorageService.deleteFiles(fileUrls);
+
+        for (Long itemId : itemIds) {
+            suggestionService.removeItem(itemId);
+            binaryQuantizedIndex.remove(itemId);
+            viewCounterService.forget(itemId);
         }
+        suggestionService.removeShop(shopId);
+        eventPublisher.publishEvent(new ShopChangedEvent(shopId));
 
-        shopRepository.delete(shop);
+        log.info("Shop {} deleted with {} items, {} files queued for removal", shopId, itemIds.size(), fileUrls.size());
     }
 
     @Transactional(readOnly = true)
     public ShopResponse getShopById(Long shopId) {
-        Shop shop = shopRepository.findById(shopId)
-                .orElseThrow(() -> new ResourceNotFoundException("Shop not found with ID: " + shopId));
-        return mapToResponse(shop);
+        return shopCache.get(shopId, id -> {
+            Shop shop = shopRepository.findById(id)
+                    .orElseThrow(() -> new ResourceNotFoundException("Shop not found with ID: " + id));
+            return mapToResponse(shop);
+        });
+    }
+
+    public CacheStats getCacheStats() {
+        return shopCache.stats();
+    }
+
+    public long getCacheSize() {
+        return shopCache.estimatedSize();
+    }
+
+    // fallbackExecution: событие вне транзакции обрабатывается сразу
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onShopChanged(ShopChangedEvent event) {
+        shopCache.invalidate(event.shopId());
+    }
+
+    // Категории меняются редко, а магазинов с ними может быть много - сбрасываем всё
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        shopCache.invalidateAll();
+    }
+
+    // Уменьшенный логотип появился после того, как ответ попал в кэш
+    @EventListener
+    public void onImageRenditionsReady(ImageRenditionsReadyEvent event) {
+        shopCache.asMap().values().removeIf(shop -> event.originalUrl().equals(shop.getLogoUrl()));
     }
 
     @Transactional(readOnly = true)
@@ -199,25 +319,64 @@ public class ShopService {
 
     @Transactional(readOnly = true)
     public List<ShopResponse> getAllApprovedShops() {
-        return shopRepository.findAll().stream()
-                .filter(Shop::isApproved)
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+        return mapToResponses(shopRepository.findByIsApproved(true, NEWEST_FIRST));
+    }
+
+    /**
+     * Одобренные магазины категории вместе со всеми её подкатегориями
+     */
+    @Transactional(readOnly = true)
+    public List<ShopResponse> getApprovedShopsInCategory(Long categoryId) {
+        List<Long> categoryIds = categoryService.getSubtreeIds(categoryId);
+        return mapToResponses(shopRepository.findApprovedByCategoryIds(categoryIds));
     }
 
     @Transactional(readOnly = true)
     public List<ShopResponse> getAllShops() {
-        return shopRepository.findAll().stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+        return mapToResponses(shopRepository.findAllBy(NEWEST_FIRST));
     }
 
     @Transactional(readOnly = true)
     public List<ShopResponse> getPendingShops() {
-        return shopRepository.findAll().stream()
-                .filter(shop -> !shop.isApproved())
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+        return mapToResponses(shopRepository.findByIsApproved(false, NEWEST_FIRST));
+    }
+
+    /**
+     * Страница списка магазинов (keyset по id, новые первыми).
+     * approved: true - одобренные, false - ожидают модерации, null - все
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<ShopListResponse> getShopsPage(Boolean approved, String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        long beforeId = CursorPage.parseIdCursor(cursor);
+        Pageable limit = PageRequest.of(0, pageSize + 1);
+
+        List<ShopListView> rows = approved != null
+                ? shopRepository.findListPage(approved, beforeId, limit)
+                : shopRepository.findListPageAll(beforeId, limit);
+
+        boolean hasMore = rows.size() > pageSize;
+        List<ShopListResponse> shops = rows.stream()
+                .limit(pageSize)
+                .map(row -> ShopListResponse.builder()
+                        .id(row.getId())
+                        .name(row.getName())
+                        .logoUrl(row.getLogoUrl())
+                        .city(row.getCity())
+                        .rating(row.getRating() != null ? row.getRating() : 0.0)
+                        .isApproved(Boolean.TRUE.equals(row.getIsApproved()))
+                        .favoritesCount(row.getFavoritesCount() != null ? row.getFavoritesCount() : 0)
+                        .createdAt(row.getCreatedAt())
+                        .ownerId(row.getOwnerId())
+                        .ownerEmail(row.getOwnerEmail())
+                        .build())
+                .toList();
+
+        return CursorPage.<ShopListResponse>builder()
+                .items(shops)
+                .nextCursor(hasMore ? CursorPage.idCursor(shops.get(shops.size() - 1).getId()) : null)
+                .hasMore(hasMore)
+                .build();
     }
 
     @Transactional
@@ -227,6 +386,8 @@ public class ShopService {
         
         shop.setApproved(true);
         Shop approvedShop = shopRepository.save(shop);
+        suggestionService.updateShop(approvedShop);
+        eventPublisher.publishEvent(new ShopChangedEvent(approvedShop.getId()));
         
         // ✅ ПЕРЕИНДЕКСАЦИЯ ПОСЛЕ ОДОБРЕНИЯ
         try {
@@ -245,7 +406,10 @@ public class ShopService {
                 .orElseThrow(() -> new ResourceNotFoundException("Shop not found with ID: " + shopId));
         
         shop.setApproved(false);
-        return mapToResponse(shopRepository.save(shop));
+        Shop rejectedShop = shopRepository.save(shop);
+        suggestionService.removeShop(rejectedShop.getId());
+        eventPublisher.publishEvent(new ShopChangedEvent(rejectedShop.getId()));
+        return mapToResponse(rejectedShop);
     }
 
     private User getCurrentUser() {
@@ -269,12 +433,37 @@ public class ShopService {
     }
 
     private ShopResponse mapToResponse(Shop shop) {
+        return mapToResponse(shop, imageRenditionService.variantsFor(logoUrls(List.of(shop))));
+    }
+
+    /**
+     * Список магазинов: копии логотипов всей выборки - одним обращением к кэшу/БД
+     */
+    private List<ShopResponse> mapToResponses(List<Shop> shops) {
+        Map<String, ImageVariants> variants = imageRenditionService.variantsFor(logoUrls(shops));
+        return shops.stream()
+                .map(shop -> mapToResponse(shop, variants))
+                .collect(Collectors.toList());
+    }
+
+    private static List<String> logoUrls(List<Shop> shops) {
+        return shops.stream()
+                .map(Shop::getLogoUrl)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+    }
+
+    private ShopResponse mapToResponse(Shop shop, Map<String, ImageVariants> variants) {
         return ShopResponse.builder()
                 .id(shop.getId())
                 .owner(mapToUserResponse(shop.getOwner()))
                 .name(shop.getName())
                 .description(shop.getDescription())
                 .logoUrl(shop.getLogoUrl())
+                .logoThumbnailUrl(shop.getLogoUrl() != null
+                        ? variants.get(shop.getLogoUrl()).getThumbnail()
+                        : null)
                 .phone(shop.getPhone())
                 .instagramLink(shop.getInstagramLink())
                 .city(shop.getCity())
@@ -1,11 +1,16 @@
 package com.skrepta.skreptajava.smartsearch.controller;
 
 import com.pgvector.PGvector;
+import com.skrepta.skreptajava.smartsearch.dto.SearchBenchmarkRequest;
 import com.skrepta.skreptajava.smartsearch.dto.SearchRequest;
 import com.skrepta.skreptajava.smartsearch.dto.SearchResponse;
+import com.skrepta.skreptajava.smartsearch.dto.SuggestionResponse;
 import com.skrepta.skreptajava.smartsearch.service.EmbeddingCacheService;
 import com.skrepta.skreptajava.smartsearch.service.IndexingService;
+import com.skrepta.skreptajava.smartsearch.service.QueryNormalizer;
+import com.skrepta.skreptajava.smartsearch.service.SearchBenchmarkService;
 import com.skrepta.skreptajava.smartsearch.service.SearchService;
+import com.skrepta.skreptajava.smartsearch.service.SuggestionService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
@@ -29,19 +34,25 @@ public class SearchController {
     private final SearchService searchService;
     private final IndexingService indexingService;
     private final EmbeddingCacheService embeddingCacheService;
+    private final SuggestionService suggestionService;
+    private final QueryNormalizer queryNormalizer;
+    private final SearchBenchmarkService searchBenchmarkService;
 
     /**
      * Основной эндпоинт для поиска
-     * GET /api/search?query=что-то для кухни&type=ITEM&limit=20
+     * GET /api/search?query=что-то для кухни&type=ITEM&limit=20&mode=TWO_STAGE&categoryId=5
      */
     @GetMapping
     @Operation(summary = "Semantic search", description = "Search for items, shops, and categories using AI")
     public ResponseEntity<SearchResponse> search(
             @RequestParam String query,
             @RequestParam(required = false) String type,
-            @RequestParam(defaultValue = "20") Integer limit
+            @RequestParam(defaultValue = "20") Integer limit,
+            @RequestParam(required = false) String mode,
+            @RequestParam(required = false) Long categoryId
     ) {
-        log.info("Search request - query: '{}', type: {}, limit: {}", query, type, limit);
+        log.info("Search request - query: '{}', type: {}, limit: {}, mode: {}, categoryId: {}",
+                query, type, limit, mode, categoryId);
 
         if (query == null || query.trim().isEmpty()) {
             return ResponseEntity.badRequest().build();
@@ -51,11 +62,26 @@ public class SearchController {
         request.setQuery(query.trim());
         request.setType(type);
         request.setLimit(Math.min(limit, 100)); // Максимум 100 результатов
+        request.setMode(mode);
+        request.setCategoryId(categoryId);
 
         SearchResponse response = searchService.search(request);
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Автодополнение для строки поиска (без обращения к OpenAI и БД)
+     * GET /api/search/suggest?query=под&limit=10
+     */
+    @GetMapping("/suggest")
+    @Operation(summary = "Search suggestions", description = "Typeahead suggestions from items, tags, shops and categories")
+    public ResponseEntity<List<SuggestionResponse>> suggest(
+            @RequestParam String query,
+            @RequestParam(defaultValue = "10") Integer limit
+    ) {
+        return ResponseEntity.ok(suggestionService.suggest(query, limit));
+    }
+
     /**
      * POST версия для более сложных запросов
      */
@@ -140,6 +166,17 @@ public class SearchController {
         return ResponseEntity.ok("Shops reindexing started");
     }
 
+    /**
+     * Перестроение индекса автодополнения (ADMIN only)
+     */
+    @PostMapping("/admin/reload-suggestions")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Reload suggestions", description = "Rebuild the typeahead index from the database (ADMIN only)")
+    public ResponseEntity<String> reloadSuggestions() {
+        suggestionService.reload();
+        return ResponseEntity.ok("Suggestion index reloaded");
+    }
+
     /**
      * Переиндексация конкретного товара
      */
@@ -208,10 +245,31 @@ public ResponseEntity<Map<String, Object>> testSetup() {
         response.put("hit_count", stats.hitCount());
         response.put("miss_count", stats.missCount());
         response.put("total_requests", stats.hitCount() + stats.missCount());
+        // Промахи кэша = реальные вызовы OpenAI
+        response.put("upstream_calls", stats.missCount());
+
+        var normalizerStats = queryNormalizer.getStats();
+        response.put("dictionary_size", normalizerStats.dictionarySize());
+        response.put("transliterated_tokens", normalizerStats.transliteratedTokens());
+        response.put("corrected_tokens", normalizerStats.correctedTokens());
         
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Сравнение режимов поиска товаров: задержка, объём векторов, пересечение выдачи (ADMIN only)
+     * POST /api/search/admin/benchmark {"queries": ["подарок маме", ...], "iterations": 5}
+     */
+    @PostMapping("/admin/benchmark")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Benchmark search modes", description = "Compare latency, storage and result overlap of item search modes (ADMIN only)")
+    public ResponseEntity<Map<String, Object>> benchmark(@RequestBody SearchBenchmarkRequest request) {
+        if (request.getQueries() == null || request.getQueries().isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(searchBenchmarkService.run(request));
+    }
+
     /**
      * Очистить кэш embeddings (ADMIN only)
      */
@@ -0,0 +1,13 @@
+package com.skrepta.skreptajava.smartsearch.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class SearchBenchmarkRequest {
+    private List<String> queries; // Набор запросов для прогона
+    private List<String> modes; // Сравниваемые режимы, null = все
+    private Integer iterations = 5; // Прогонов каждого запроса в каждом режиме
+    private Integer limit = 20;
+}
@@ -10,4 +10,6 @@ public class SearchRequest {
     private String query;
     private Integer limit = 20; // По умолчанию 20 результатов
     private String type; // "ITEM", "SHOP", "CATEGORY", или null для всех типов
+    private String mode; // Режим поиска товаров: "SINGLE" (по умолчанию), "MULTI_VECTOR", "TWO_STAGE" или "BINARY"
+    private Long categoryId; // Только в этой категории и её подкатегориях (null - везде)
 }
\ No newline at end of file
@@ -17,6 +17,11 @@ public class SearchResponse {
      * Оригинальный поисковый запрос
      */
     private String query;
+
+    /**
+     * Запрос после нормализации и исправления опечаток (по нему строится embedding)
+     */
+    private String normalizedQuery;
     
     /**
      * Общее количество найденных результатов
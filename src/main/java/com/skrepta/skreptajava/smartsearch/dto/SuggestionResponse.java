@@ -0,0 +1,13 @@
+package com.skrepta.skreptajava.smartsearch.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class SuggestionResponse {
+    private String type; // "ITEM", "SHOP", "CATEGORY", "TAG"
+    private Long id; // null для тегов
+    private String text;
+    private Long weight; // Вес популярности (просмотры + избранное)
+}
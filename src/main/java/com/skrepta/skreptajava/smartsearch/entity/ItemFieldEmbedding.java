@@ -0,0 +1,66 @@
+package com.skrepta.skreptajava.smartsearch.entity;
+
+import com.pgvector.PGvector;
+import com.skrepta.skreptajava.config.VectorType;
+import com.skrepta.skreptajava.item.entity.Item;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+import org.hibernate.annotations.Type;
+
+import java.util.Objects;
+
+/**
+ * Отдельный вектор для одного поля товара (название, теги, описание).
+ * Используется в режиме поиска MULTI_VECTOR: короткие запросы сравниваются
+ * с названием напрямую, а не с "размытым" вектором всего текста.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(
+        name = "item_field_embeddings",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"item_id", "field"})
+)
+public class ItemFieldEmbedding {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "item_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Item item;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Field field;
+
+    @Type(VectorType.class)
+    @Column(columnDefinition = "vector(1536)", nullable = false)
+    private PGvector embedding;
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ItemFieldEmbedding)) return false;
+        ItemFieldEmbedding that = (ItemFieldEmbedding) o;
+        return id != null && Objects.equals(id, that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode();
+    }
+
+    public enum Field {
+        TITLE, TAGS, DESCRIPTION
+    }
+}
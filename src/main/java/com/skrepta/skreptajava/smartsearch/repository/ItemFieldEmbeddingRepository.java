@@ -0,0 +1,17 @@
+package com.skrepta.skreptajava.smartsearch.repository;
+
+import com.skrepta.skreptajava.smartsearch.entity.ItemFieldEmbedding;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ItemFieldEmbeddingRepository extends JpaRepository<ItemFieldEmbedding, Long> {
+
+    // ✅ Удалить все векторы полей товара (перед переиндексацией)
+    @Modifying
+    @Query("DELETE FROM ItemFieldEmbedding e WHERE e.item.id = :itemId")
+    void deleteByItemId(@Param("itemId") Long itemId);
+}
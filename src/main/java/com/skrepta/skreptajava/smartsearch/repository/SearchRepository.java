@@ -5,16 +5,27 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.support.TransactionTemplate;
 import lombok.RequiredArgsConstructor;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @Repository
 @RequiredArgsConstructor
 public class SearchRepository {
 
+    // Значение hnsw.ef_search в pgvector по умолчанию и его верхняя граница
+    private static final int DEFAULT_EF_SEARCH = 40;
+    private static final int MAX_EF_SEARCH = 1000;
+
     private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
 
     // ============================================
     // SEMANTIC SEARCH (с векторами)
@@ -24,6 +35,13 @@ public class SearchRepository {
      * Векторный поиск по товарам
      */
     public List<Map<String, Object>> searchItems(PGvector embedding, int limit) {
+        return searchItems(embedding, null, limit);
+    }
+
+    /**
+     * Векторный поиск по товарам магазинов из заданных категорий (null - без фильтра)
+     */
+    public List<Map<String, Object>> searchItems(PGvector embedding, List<Long> categoryIds, int limit) {
         String sql = """
             SELECT
                 i.id,
@@ -32,18 +50,135 @@ public class SearchRepository {
             FROM items i
             WHERE i.embedding IS NOT NULL
               AND i.is_active = true
+              %s
             ORDER BY i.embedding <=> CAST(? AS vector)
             LIMIT ?
-            """;
+            """.formatted(inCategories("i.shop_id", categoryIds));
         
         String embeddingStr = embedding.toString();
-        return jdbcTemplate.queryForList(sql, embeddingStr, embeddingStr, limit);
+        List<Object> args = new ArrayList<>();
+        args.add(embeddingStr);
+        addCategories(args, categoryIds);
+        args.add(embeddingStr);
+        args.add(limit);
+        return jdbcTemplate.queryForList(sql, args.toArray());
+    }
+
+    /**
+     * Двухэтапный поиск по товарам: укороченный вектор (256) по своему HNSW-индексу
+     * отбирает кандидатов, полный вектор пересчитывает их точную близость.
+     * ef_search поднимается до числа кандидатов, иначе индекс отдаёт не больше 40 строк.
+     */
+    public List<Map<String, Object>> searchItemsTwoStage(PGvector shortEmbedding, PGvector embedding,
+                                                         int candidates, int limit) {
+        String sql = """
+            WITH candidates AS (
+                SELECT i.id
+                FROM items i
+                WHERE i.embedding_short IS NOT NULL
+                  AND i.is_active = true
+                ORDER BY i.embedding_short <=> CAST(? AS vector)
+                LIMIT ?
+            )
+            SELECT
+                i.id,
+                i.title,
+                1 - (i.embedding <=> CAST(? AS vector)) AS score
+            FROM candidates c
+            JOIN items i ON i.id = c.id
+            WHERE i.embedding IS NOT NULL
+            ORDER BY i.embedding <=> CAST(? AS vector)
+            LIMIT ?
+            """;
+
+        String shortStr = shortEmbedding.toString();
+        String embeddingStr = embedding.toString();
+        return withEfSearch(candidates, () ->
+                jdbcTemplate.queryForList(sql, shortStr, candidates, embeddingStr, embeddingStr, limit));
+    }
+
+    /**
+     * Точный пересчёт близости для кандидатов, отобранных бинарным индексом
+     */
+    public List<Map<String, Object>> searchItemsByIds(PGvector embedding, List<Long> ids, int limit) {
+        String sql = """
+            SELECT
+                i.id,
+                i.title,
+                1 - (i.embedding <=> CAST(? AS vector)) AS score
+            FROM items i
+            WHERE i.id = ANY(CAST(? AS bigint[]))
+              AND i.embedding IS NOT NULL
+              AND i.is_active = true
+            ORDER BY i.embedding <=> CAST(? AS vector)
+            LIMIT ?
+            """;
+
+        String embeddingStr = embedding.toString();
+        return jdbcTemplate.queryForList(sql, embeddingStr, toIdArray(ids), embeddingStr, limit);
+    }
+
+    /**
+     * Векторный поиск по товарам с отдельными векторами полей (max-sim):
+     * оценка товара = лучшее совпадение среди его названия, тегов и описания.
+     * Описание немного штрафуется, чтобы длинный текст не перебивал название.
+     */
+    public List<Map<String, Object>> searchItemsMaxSim(PGvector embedding, int candidates, int limit) {
+        String sql = """
+            WITH candidates AS (
+                SELECT
+                    f.item_id,
+                    f.field,
+                    1 - (f.embedding <=> CAST(? AS vector)) AS sim
+                FROM item_field_embeddings f
+                ORDER BY f.embedding <=> CAST(? AS vector)
+                LIMIT ?
+            )
+            SELECT
+                i.id,
+                i.title,
+                MAX(c.sim * CASE c.field
+                    WHEN 'TITLE' THEN 1.0::float8
+                    WHEN 'TAGS' THEN 0.95::float8
+                    ELSE 0.9::float8
+                END) AS score
+            FROM candidates c
+            JOIN items i ON i.id = c.item_id
+            WHERE i.is_active = true
+            GROUP BY i.id, i.title
+            ORDER BY score DESC
+            LIMIT ?
+            """;
+
+        String embeddingStr = embedding.toString();
+        return withEfSearch(candidates, () ->
+                jdbcTemplate.queryForList(sql, embeddingStr, embeddingStr, candidates, limit));
+    }
+
+    /**
+     * hnsw.ef_search, с которым выполняется запрос на столько кандидатов
+     */
+    public static int efSearchFor(int candidates) {
+        return Math.min(MAX_EF_SEARCH, Math.max(DEFAULT_EF_SEARCH, candidates));
+    }
+
+    /**
+     * Запрос по HNSW-индексу, которому нужно больше кандидатов, чем ef_search по умолчанию:
+     * индекс отдаёт не больше hnsw.ef_search строк, и LIMIT сверх этого не действует.
+     * SET LOCAL действует до конца транзакции (при вызове из @Transactional - внешней).
+     */
+    private <T> T withEfSearch(int candidates, Supplier<T> query) {
+        int efSearch = efSearchFor(candidates);
+        return transactionTemplate.execute(status -> {
+            jdbcTemplate.execute("SET LOCAL hnsw.ef_search = " + efSearch);
+            return query.get();
+        });
     }
 
     /**
      * Векторный поиск по магазинам
      */
-    public List<Map<String, Object>> searchShops(PGvector embedding, int limit) {
+    public List<Map<String, Object>> searchShops(PGvector embedding, List<Long> categoryIds, int limit) {
         String sql = """
             SELECT
                 s.id,
@@ -52,12 +187,18 @@ public class SearchRepository {
             FROM shops s
             WHERE s.embedding IS NOT NULL
               AND s.is_approved = true
+              %s
             ORDER BY s.embedding <=> CAST(? AS vector)
             LIMIT ?
-            """;
+            """.formatted(inCategories("s.id", categoryIds));
         
         String embeddingStr = embedding.toString();
-        return jdbcTemplate.queryForList(sql, embeddingStr, embeddingStr, limit);
+        List<Object> args = new ArrayList<>();
+        args.add(embeddingStr);
+        addCategories(args, categoryIds);
+        args.add(embeddingStr);
+        args.add(limit);
+        return jdbcTemplate.queryForList(sql, args.toArray());
     }
 
     /**
@@ -88,7 +229,7 @@ public class SearchRepository {
      * Текстовый поиск по товарам (FALLBACK)
      * Использует простой ILIKE поиск
      */
-    public List<Map<String, Object>> keywordSearchItems(String query, int limit) {
+    public List<Map<String, Object>> keywordSearchItems(String query, List<Long> categoryIds, int limit) {
         String sql = """
             SELECT 
                 i.id,
@@ -101,6 +242,7 @@ public class SearchRepository {
                   LOWER(i.title) LIKE LOWER(?) 
                   OR LOWER(i.description) LIKE LOWER(?)
               )
+              %s
             ORDER BY 
                 CASE 
                     WHEN LOWER(i.title) = LOWER(?) THEN 1
@@ -109,21 +251,21 @@ public class SearchRepository {
                 END,
                 i.created_at DESC
             LIMIT ?
-            """;
+            """.formatted(inCategories("i.shop_id", categoryIds));
         
         String likePattern = "%" + query + "%";
         String startsWithPattern = query + "%";
         
-        return jdbcTemplate.queryForList(sql, 
-            likePattern, likePattern, 
-            query, startsWithPattern, 
-            limit);
+        List<Object> args = new ArrayList<>(List.of(likePattern, likePattern));
+        addCategories(args, categoryIds);
+        args.addAll(List.of(query, startsWithPattern, limit));
+        return jdbcTemplate.queryForList(sql, args.toArray());
     }
 
     /**
      * Текстовый поиск по магазинам (FALLBACK)
      */
-    public List<Map<String, Object>> keywordSearchShops(String query, int limit) {
+    public List<Map<String, Object>> keywordSearchShops(String query, List<Long> categoryIds, int limit) {
         String sql = """
             SELECT 
                 s.id,
@@ -136,6 +278,7 @@ public class SearchRepository {
                   LOWER(s.name) LIKE LOWER(?) 
                   OR LOWER(s.description) LIKE LOWER(?)
               )
+              %s
             ORDER BY 
                 CASE 
                     WHEN LOWER(s.name) = LOWER(?) THEN 1
@@ -144,15 +287,15 @@ public class SearchRepository {
                 END,
                 s.created_at DESC
             LIMIT ?
-            """;
+            """.formatted(inCategories("s.id", categoryIds));
         
         String likePattern = "%" + query + "%";
         String startsWithPattern = query + "%";
         
-        return jdbcTemplate.queryForList(sql, 
-            likePattern, likePattern, 
-            query, startsWithPattern, 
-            limit);
+        List<Object> args = new ArrayList<>(List.of(likePattern, likePattern));
+        addCategories(args, categoryIds);
+        args.addAll(List.of(query, startsWithPattern, limit));
+        return jdbcTemplate.queryForList(sql, args.toArray());
     }
 
     /**
@@ -185,4 +328,185 @@ public class SearchRepository {
             query, startsWithPattern, 
             limit);
     }
+
+    // ============================================
+    // Фильтр по поддереву категорий
+    // ============================================
+
+    /**
+     * Условие "магазин относится к одной из категорий": один подзапрос
+     * по индексу shop_categories(category_id). Поддерево категорий
+     * разворачивается заранее (CategoryTreeCache), рекурсии в SQL нет.
+     */
+    private static String inCategories(String shopIdColumn, List<Long> categoryIds) {
+        if (categoryIds == null) return "";
+        return "AND " + shopIdColumn
+                + " IN (SELECT sc.shop_id FROM shop_categories sc WHERE sc.category_id = ANY(CAST(? AS bigint[])))";
+    }
+
+    private static void addCategories(List<Object> args, List<Long> categoryIds) {
+        if (categoryIds != null) {
+            args.add(toIdArray(categoryIds));
+        }
+    }
+
+    private static String toIdArray(List<Long> ids) {
+        return ids.stream().map(String::valueOf).collect(Collectors.joining(",", "{", "}"));
+    }
+
+    // ============================================
+    // TWO_STAGE: укороченные векторы
+    // ============================================
+
+    /**
+     * HNSW-индекс по укороченному вектору (требует pgvector 0.5+)
+     */
+    public void createShortEmbeddingIndex() {
+        jdbcTemplate.execute("""
+            CREATE INDEX IF NOT EXISTS idx_items_embedding_short_hnsw
+            ON items USING hnsw (embedding_short vector_cosine_ops)
+            """);
+    }
+
+    /**
+     * HNSW-индекс по векторам полей товаров (первый шаг MULTI_VECTOR)
+     */
+    public void createFieldEmbeddingIndex() {
+        jdbcTemplate.execute("""
+            CREATE INDEX IF NOT EXISTS idx_item_field_embeddings_hnsw
+            ON item_field_embeddings USING hnsw (embedding vector_cosine_ops)
+            """);
+    }
+
+    public List<Map<String, Object>> findItemsWithoutShortEmbedding(int limit) {
+        return jdbcTemplate.queryForList("""
+            SELECT id, embedding::text AS embedding
+            FROM items
+            WHERE embedding IS NOT NULL
+              AND embedding_short IS NULL
+            ORDER BY id
+            LIMIT ?
+            """, limit);
+    }
+
+    /**
+     * @param updates пары [вектор в текстовом виде, id товара]
+     */
+    /**
+     * Точечная запись векторов товара: остальные колонки (счётчики просмотров
+     * и избранного) не трогаются
+     */
+    public void updateItemEmbeddings(Long itemId, PGvector embedding, PGvector embeddingShort) {
+        jdbcTemplate.update(
+                "UPDATE items SET embedding = CAST(? AS vector), embedding_short = CAST(? AS vector) WHERE id = ?",
+                embedding.toString(), embeddingShort.toString(), itemId);
+    }
+
+    public void updateShortEmbeddings(List<Object[]> updates) {
+        if (updates.isEmpty()) return;
+        jdbcTemplate.batchUpdate(
+                "UPDATE items SET embedding_short = CAST(? AS vector) WHERE id = ?", updates);
+    }
+
+    // ============================================
+    // BINARY: загрузка векторов в память
+    // ============================================
+
+    /**
+     * Построчно отдаёт ID и текстовый вид вектора всех активных товаров,
+     * не собирая весь результат в список
+     */
+    public void forEachActiveItemEmbedding(BiConsumer<Long, String> consumer) {
+        jdbcTemplate.query("""
+            SELECT id, embedding::text AS embedding
+            FROM items
+            WHERE embedding IS NOT NULL
+              AND is_active = true
+            """, (RowCallbackHandler) rs -> consumer.accept(rs.getLong("id"), rs.getString("embedding")));
+    }
+
+    // ============================================
+    // BENCHMARK: объём хранения векторов
+    // ============================================
+
+    /**
+     * Суммарный объём колонки items.embedding в байтах (режим SINGLE)
+     */
+    public long itemEmbeddingStorageBytes() {
+        Long bytes = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(pg_column_size(embedding)), 0) FROM items", Long.class);
+        return bytes != null ? bytes : 0L;
+    }
+
+    /**
+     * Суммарный объём колонки items.embedding_short в байтах (первый этап TWO_STAGE)
+     */
+    public long itemShortEmbeddingStorageBytes() {
+        Long bytes = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(pg_column_size(embedding_short)), 0) FROM items", Long.class);
+        return bytes != null ? bytes : 0L;
+    }
+
+    /**
+     * Полный размер таблицы item_field_embeddings с индексами и TOAST (режим MULTI_VECTOR)
+     */
+    public long itemFieldEmbeddingStorageBytes() {
+        Long bytes = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(pg_total_relation_size(to_regclass('item_field_embeddings')), 0)", Long.class);
+        return bytes != null ? bytes : 0L;
+    }
+
+    // ============================================
+    // SUGGEST: данные для индекса автодополнения
+    // ============================================
+
+    /**
+     * Активные товары с метриками популярности
+     */
+    public List<Map<String, Object>> loadItemSuggestions() {
+        String sql = """
+            SELECT i.id, i.title, i.views, i.favorites
+            FROM items i
+            WHERE i.is_active = true
+            """;
+        return jdbcTemplate.queryForList(sql);
+    }
+
+    /**
+     * Теги активных товаров (одна строка на пару товар-тег)
+     */
+    public List<Map<String, Object>> loadItemTags() {
+        String sql = """
+            SELECT t.item_id, t.tag
+            FROM item_tags t
+            JOIN items i ON i.id = t.item_id
+            WHERE i.is_active = true
+              AND t.tag IS NOT NULL
+            """;
+        return jdbcTemplate.queryForList(sql);
+    }
+
+    /**
+     * Одобренные магазины с количеством добавлений в избранное
+     */
+    public List<Map<String, Object>> loadShopSuggestions() {
+        String sql = """
+            SELECT s.id, s.name AS title, COALESCE(s.favorites_count, 0) AS favorites
+            FROM shops s
+            WHERE s.is_approved = true
+            """;
+        return jdbcTemplate.queryForList(sql);
+    }
+
+    /**
+     * Активные категории
+     */
+    public List<Map<String, Object>> loadCategorySuggestions() {
+        String sql = """
+            SELECT c.id, c.name AS title
+            FROM categories c
+            WHERE c.is_active = true
+            """;
+        return jdbcTemplate.queryForList(sql);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,354 @@
+package com.skrepta.skreptajava.smartsearch.service;
+
+import com.pgvector.PGvector;
+import com.skrepta.skreptajava.smartsearch.repository.SearchRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Бинарно квантованные векторы товаров в памяти: от каждой компоненты embedding
+ * остаётся только знак (1 бит вместо 4 байт, в 32 раза меньше).
+ * Расстояние Хэмминга между такими кодами грубо повторяет косинусное,
+ * поэтому полный перебор по ним быстро отбирает кандидатов для точного
+ * пересчёта по полным векторам в БД.
+ * Коды хранятся только в плоском снимке; изменения копятся в небольшом буфере
+ * и вливаются в новый снимок в фоне, поиск никогда не ждёт перестройки.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BinaryQuantizedIndex {
+
+    private final SearchRepository searchRepository;
+
+    // Пустой код в буфере - товар удалён из индекса
+    private static final long[] REMOVED = new long[0];
+
+    // Изменения после последней перестройки снимка
+    private final Map<Long, long[]> pending = new ConcurrentHashMap<>();
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    /**
+     * Полная загрузка кодов активных товаров при старте
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reload() {
+        try {
+            long startTime = System.currentTimeMillis();
+            Map<Long, long[]> fresh = new HashMap<>();
+            searchRepository.forEachActiveItemEmbedding((id, embedding) -> fresh.put(id, quantize(embedding)));
+
+            // Изменения, пришедшие во время загрузки, остаются в буфере и применятся поверх
+            Snapshot current = Snapshot.build(fresh);
+            synchronized (this) {
+                snapshot = current;
+            }
+
+            log.info("Binary vector index loaded in {}ms: {} items, {} KB",
+                    System.currentTimeMillis() - startTime, current.size(), current.memoryBytes() / 1024);
+        } catch (Exception e) {
+            log.error("Failed to load binary vector index: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Изменения попадают в буфер после коммита текущей транзакции (без транзакции - сразу),
+     * чтобы откат не оставлял индекс расходящимся с БД до перезапуска
+     */
+    public void update(Long itemId, PGvector embedding) {
+        if (itemId == null || embedding == null) return;
+        long[] code = quantize(embedding.toArray());
+        afterCommit(() -> pending.put(itemId, code));
+    }
+
+    public void remove(Long itemId) {
+        if (itemId == null) return;
+        afterCommit(() -> pending.put(itemId, REMOVED));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Вливает накопленные изменения в новый снимок (O(N) копирование в фоне).
+     * До этого поиск видит старый снимок: удалённые товары отсеет точный пересчёт в БД.
+     */
+    @Scheduled(initialDelayString = "${search.binary.refresh-ms:2000}", fixedDelayString = "${search.binary.refresh-ms:2000}")
+    public void applyPending() {
+        if (pending.isEmpty()) return;
+        try {
+            Map<Long, long[]> batch = new HashMap<>(pending);
+            synchronized (this) {
+                snapshot = snapshot.merge(batch);
+            }
+            // Удаляем из буфера только то, что вошло в снимок; новые изменения ждут следующего раза
+            batch.forEach(pending::remove);
+        } catch (Exception e) {
+            log.error("Failed to refresh binary vector index: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * ID товаров с наименьшим расстоянием Хэмминга до запроса (порядок не гарантирован).
+     * Пустой список, если индекс пуст или размерность запроса не совпадает.
+     */
+    public List<Long> candidates(PGvector query, int k) {
+        Snapshot current = snapshot;
+        long[] code = quantize(query.toArray());
+        if (current.size() == 0 || code.length != current.words || k <= 0) {
+            return List.of();
+        }
+        return current.nearest(code, k);
+    }
+
+    /**
+     * memoryBytes - снимок плюс ещё не влитые коды (ID и код на каждое изменение)
+     */
+    public IndexStats getStats() {
+        Snapshot current = snapshot;
+        long pendingBytes = 0;
+        for (long[] code : pending.values()) {
+            pendingBytes += (long) (1 + code.length) * Long.BYTES;
+        }
+        return new IndexStats(current.size(), current.words * 64, current.memoryBytes() + pendingBytes,
+                (long) current.size() * current.words * 64 * Float.BYTES);
+    }
+
+    // ============================================
+    // Квантование
+    // ============================================
+
+    /**
+     * Бит i = 1, если компонента i положительная
+     */
+    static long[] quantize(float[] vector) {
+        long[] code = new long[(vector.length + 63) / 64];
+        for (int i = 0; i < vector.length; i++) {
+            if (vector[i] > 0) {
+                code[i >>> 6] |= 1L << (i & 63);
+            }
+        }
+        return code;
+    }
+
+    /**
+     * То же по текстовому виду pgvector "[0.1,-0.2,...]" без разбора чисел:
+     * для знака достаточно посмотреть на первый символ компоненты
+     */
+    static long[] quantize(String text) {
+        int dimensions = 1;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == ',') dimensions++;
+        }
+
+        long[] code = new long[(dimensions + 63) / 64];
+        int component = 0;
+        int start = text.indexOf('[') + 1;
+        for (int i = start; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (i == start || text.charAt(i - 1) == ',') {
+                if (c != '-' && !isZero(text, i)) {
+                    code[component >>> 6] |= 1L << (component & 63);
+                }
+                component++;
+            }
+        }
+        return code;
+    }
+
+    private static boolean isZero(String text, int from) {
+        for (int i = from; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == ',' || c == ']') return true;
+            if (c >= '1' && c <= '9') return false;
+            if (c == 'e' || c == 'E') return true;
+        }
+        return true;
+    }
+
+    public record IndexStats(
+            int vectors,
+            int bitsPerVector,
+            long memoryBytes,
+            long floatEquivalentBytes
+    ) {}
+
+    // ============================================
+    // Снимок
+    // ============================================
+
+    private static final class Snapshot {
+        private static final Snapshot EMPTY = new Snapshot(new long[0], new long[0], 0);
+
+        private final long[] ids;
+        // Коды всех товаров подряд: товар n занимает [n * words, (n + 1) * words)
+        private final long[] bits;
+        private final int words;
+
+        private Snapshot(long[] ids, long[] bits, int words) {
+            this.ids = ids;
+            this.bits = bits;
+            this.words = words;
+        }
+
+        private static Snapshot build(Map<Long, long[]> codes) {
+            if (codes.isEmpty()) return EMPTY;
+
+            int words = majorityLength(codes);
+
+            long[] ids = new long[codes.size()];
+            long[] bits = new long[codes.size() * words];
+            int n = 0;
+            for (Map.Entry<Long, long[]> entry : codes.entrySet()) {
+                long[] code = entry.getValue();
+                if (code.length != words) continue;
+                ids[n] = entry.getKey();
+                System.arraycopy(code, 0, bits, n * words, words);
+                n++;
+            }
+            if (n < ids.length) {
+                ids = Arrays.copyOf(ids, n);
+                bits = Arrays.copyOf(bits, n * words);
+            }
+            return new Snapshot(ids, bits, words);
+        }
+
+        /**
+         * Новый снимок: старые коды без изменённых и удалённых, затем новые коды
+         */
+        private Snapshot merge(Map<Long, long[]> changes) {
+            int newWords = words > 0 ? words : majorityLength(changes);
+            long[] newIds = new long[ids.length + changes.size()];
+            long[] newBits = new long[newIds.length * newWords];
+            int n = 0;
+            for (int i = 0; i < ids.length; i++) {
+                if (changes.containsKey(ids[i])) continue;
+                newIds[n] = ids[i];
+                System.arraycopy(bits, i * words, newBits, n * newWords, newWords);
+                n++;
+            }
+            for (Map.Entry<Long, long[]> entry : changes.entrySet()) {
+                long[] code = entry.getValue();
+                if (code == REMOVED || code.length != newWords) continue; // удаление или другая размерность
+                newIds[n] = entry.getKey();
+                System.arraycopy(code, 0, newBits, n * newWords, newWords);
+                n++;
+            }
+            if (n == 0) return EMPTY;
+            return new Snapshot(Arrays.copyOf(newIds, n), Arrays.copyOf(newBits, n * newWords), newWords);
+        }
+
+        /**
+         * Размерность берём по большинству: векторы другой длины пропускаем
+         */
+        private static int majorityLength(Map<Long, long[]> codes) {
+            Map<Integer, Integer> lengths = new HashMap<>();
+            codes.values().forEach(code -> {
+                if (code.length > 0) lengths.merge(code.length, 1, Integer::sum);
+            });
+            return lengths.entrySet().stream()
+                    .max(Map.Entry.comparingByValue())
+                    .map(Map.Entry::getKey)
+                    .orElse(0);
+        }
+
+        private int size() {
+            return ids.length;
+        }
+
+        private long memoryBytes() {
+            return (long) (ids.length + bits.length) * Long.BYTES;
+        }
+
+        /**
+         * Полный перебор с ограниченной max-кучей на k элементов.
+         * Подсчёт расстояния прерывается, как только оно превысило худшее в куче.
+         */
+        private List<Long> nearest(long[] query, int k) {
+            int capacity = Math.min(k, ids.length);
+            int[] heapDistance = new int[capacity];
+            int[] heapIndex = new int[capacity];
+            int heapSize = 0;
+
+            for (int n = 0; n < ids.length; n++) {
+                int bound = heapSize == capacity ? heapDistance[0] : Integer.MAX_VALUE;
+                int offset = n * words;
+                int distance = 0;
+                for (int w = 0; w < words && distance < bound; w++) {
+                    distance += Long.bitCount(bits[offset + w] ^ query[w]);
+                }
+                if (distance >= bound) continue;
+
+                if (heapSize < capacity) {
+                    heapDistance[heapSize] = distance;
+                    heapIndex[heapSize] = n;
+                    siftUp(heapDistance, heapIndex, heapSize++);
+                } else {
+                    heapDistance[0] = distance;
+                    heapIndex[0] = n;
+                    siftDown(heapDistance, heapIndex, heapSize);
+                }
+            }
+
+            List<Long> result = new ArrayList<>(heapSize);
+            for (int i = 0; i < heapSize; i++) {
+                result.add(ids[heapIndex[i]]);
+            }
+            return result;
+        }
+
+        private static void siftUp(int[] distance, int[] index, int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (distance[parent] >= distance[i]) break;
+                swap(distance, index, parent, i);
+                i = parent;
+            }
+        }
+
+        private static void siftDown(int[] distance, int[] index, int size) {
+            int i = 0;
+            while (true) {
+                int left = 2 * i + 1;
+                if (left >= size) break;
+                int largest = left + 1 < size && distance[left + 1] > distance[left] ? left + 1 : left;
+                if (distance[i] >= distance[largest]) break;
+                swap(distance, index, i, largest);
+                i = largest;
+            }
+        }
+
+        private static void swap(int[] distance, int[] index, int a, int b) {
+            int d = distance[a];
+            distance[a] = distance[b];
+            distance[b] = d;
+            int x = index[a];
+            index[a] = index[b];
+            index[b] = x;
+        }
+    }
+}
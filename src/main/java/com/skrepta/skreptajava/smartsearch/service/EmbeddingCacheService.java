@@ -30,7 +30,8 @@ public class EmbeddingCacheService {
             return null;
         }
 
-        String cacheKey = generateCacheKey(text.trim().toLowerCase());
+        // Одинаковый текст с разным регистром/пунктуацией/пробелами - один ключ
+        String cacheKey = generateCacheKey(QueryNormalizer.fold(text));
         
         PGvector cached = embeddingCache.getIfPresent(cacheKey);
         if (cached != null) {
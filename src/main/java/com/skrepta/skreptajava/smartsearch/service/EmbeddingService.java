@@ -8,8 +8,12 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import com.skrepta.skreptajava.smartsearch.entity.ItemFieldEmbedding;
+
 import java.time.Duration;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 @Slf4j
 @Service
@@ -20,6 +24,8 @@ public class EmbeddingService {
     private final RateLimiter rateLimiter; 
     
     private static final String MODEL = "text-embedding-3-large";
+    // Размерность укороченного вектора для первого этапа поиска
+    public static final int SHORT_DIMENSIONS = 256;
     private static final int MAX_RETRIES = 3;
     private static final long RETRY_DELAY_MS = 1000;
 
@@ -92,6 +98,31 @@ public class EmbeddingService {
         return null;
     }
 
+    /**
+     * Укорачивает вектор до первых dimensions компонент и нормирует заново.
+     * Модели text-embedding-3 обучены так (Matryoshka), что префикс вектора
+     * сам по себе остаётся осмысленным embedding'ом.
+     */
+    public static PGvector truncate(PGvector embedding, int dimensions) {
+        if (embedding == null) return null;
+
+        float[] full = embedding.toArray();
+        float[] shortened = new float[Math.min(dimensions, full.length)];
+        double norm = 0;
+        for (int i = 0; i < shortened.length; i++) {
+            shortened[i] = full[i];
+            norm += (double) full[i] * full[i];
+        }
+
+        norm = Math.sqrt(norm);
+        if (norm > 0) {
+            for (int i = 0; i < shortened.length; i++) {
+                shortened[i] = (float) (shortened[i] / norm);
+            }
+        }
+        return new PGvector(shortened);
+    }
+
     
     public String generateItemText(String title, String description, List<String> tags, String categoryName) {
         StringBuilder sb = new StringBuilder();
@@ -121,6 +152,39 @@ public class EmbeddingService {
         return sb.toString().trim();
     }
 
+    /**
+     * Тексты для отдельных векторов полей товара (режим MULTI_VECTOR).
+     * Пустые поля пропускаются.
+     */
+    public Map<ItemFieldEmbedding.Field, String> generateItemFieldTexts(
+            String title, String description, List<String> tags, String categoryName) {
+        Map<ItemFieldEmbedding.Field, String> texts = new EnumMap<>(ItemFieldEmbedding.Field.class);
+
+        if (title != null && !title.isBlank()) {
+            texts.put(ItemFieldEmbedding.Field.TITLE, title.trim());
+        }
+
+        StringBuilder tagsText = new StringBuilder();
+        if (categoryName != null) {
+            tagsText.append(categoryName).append(". ");
+        }
+        if (tags != null && !tags.isEmpty()) {
+            tagsText.append(String.join(", ", tags));
+        }
+        if (!tagsText.toString().isBlank()) {
+            texts.put(ItemFieldEmbedding.Field.TAGS, tagsText.toString().trim());
+        }
+
+        if (description != null && !description.isBlank()) {
+            String shortDesc = description.length() > 500
+                ? description.substring(0, 500) + "..."
+                : description;
+            texts.put(ItemFieldEmbedding.Field.DESCRIPTION, shortDesc.trim());
+        }
+
+        return texts;
+    }
+
     
     public String generateShopText(String name, String description, String ownerName) {
         StringBuilder sb = new StringBuilder();
@@ -7,12 +7,26 @@ import com.skrepta.skreptajava.item.entity.Item;
 import com.skrepta.skreptajava.item.repository.ItemRepository;
 import com.skrepta.skreptajava.shop.entity.Shop;
 import com.skrepta.skreptajava.shop.repository.ShopRepository;
+import com.skrepta.skreptajava.smartsearch.entity.ItemFieldEmbedding;
+import com.skrepta.skreptajava.smartsearch.repository.ItemFieldEmbeddingRepository;
+import com.skrepta.skreptajava.smartsearch.repository.SearchRepository;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
@@ -24,6 +38,24 @@ public class IndexingService {
     private final ItemRepository itemRepository;
     private final ShopRepository shopRepository;
     private final CategoryRepository categoryRepository;
+    private final ItemFieldEmbeddingRepository itemFieldEmbeddingRepository;
+    private final SearchRepository searchRepository;
+    private final BinaryQuantizedIndex binaryQuantizedIndex;
+    private final TransactionTemplate transactionTemplate;
+
+    private static final int BACKFILL_BATCH_SIZE = 500;
+
+    // Индексация после записи товара: вызовы OpenAI идут в своём потоке,
+    // а не внутри транзакции записи и не в потоке запроса
+    private final ExecutorService itemIndexExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "item-indexing");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Отдельные векторы для названия/тегов/описания (x3 вызова OpenAI на товар)
+    @Value("${search.multi-vector.enabled:false}")
+    private boolean multiVectorEnabled;
 
     /**
      * Индексирует все существующие данные (товары, магазины, категории)
@@ -116,12 +148,20 @@ public class IndexingService {
     }
 
     /**
-     * Индексирует конкретный товар
+     * Индексирует конкретный товар. Векторы пишутся точечным UPDATE:
+     * полное сохранение сущности затёрло бы счётчики просмотров и избранного,
+     * изменённые атомарно за время запроса к OpenAI.
      */
     @Transactional
     public void indexItem(Item item) {
         if (item == null) return;
-        
+        saveItemVectors(embedItem(itemTexts(item)));
+    }
+
+    /**
+     * Тексты для векторов товара; читается в транзакции (категории магазина ленивые)
+     */
+    private ItemTexts itemTexts(Item item) {
         // Получаем название категории из магазина
         String categoryName = item.getShop() != null && 
                              item.getShop().getCategories() != null && 
@@ -136,12 +176,97 @@ public class IndexingService {
                 categoryName
         );
 
-        PGvector embedding = embeddingService.generateEmbedding(text);
-        if (embedding != null) {
-            item.setEmbedding(embedding);
-            itemRepository.save(item);
-            log.debug("Indexed item: {} (ID: {})", item.getTitle(), item.getId());
+        Map<ItemFieldEmbedding.Field, String> fieldTexts = multiVectorEnabled
+                ? embeddingService.generateItemFieldTexts(
+                        item.getTitle(),
+                        item.getDescription(),
+                        item.getTags(),
+                        categoryName)
+                : Map.of();
+
+        return new ItemTexts(item.getId(), item.isActive(), text, fieldTexts);
+    }
+
+    /**
+     * Вызовы OpenAI; транзакция и соединение с БД здесь не нужны
+     */
+    private ItemVectors embedItem(ItemTexts texts) {
+        Map<ItemFieldEmbedding.Field, PGvector> fieldEmbeddings = new EnumMap<>(ItemFieldEmbedding.Field.class);
+        texts.fieldTexts().forEach((field, fieldText) -> {
+            PGvector fieldEmbedding = embeddingService.generateEmbedding(fieldText);
+            if (fieldEmbedding != null) {
+                fieldEmbeddings.put(field, fieldEmbedding);
+            }
+        });
+        return new ItemVectors(texts.itemId(), texts.active(),
+                embeddingService.generateEmbedding(texts.text()), fieldEmbeddings);
+    }
+
+    private void saveItemVectors(ItemVectors vectors) {
+        if (vectors.embedding() != null) {
+            searchRepository.updateItemEmbeddings(vectors.itemId(), vectors.embedding(),
+                    EmbeddingService.truncate(vectors.embedding(), EmbeddingService.SHORT_DIMENSIONS));
+            if (vectors.active()) {
+                binaryQuantizedIndex.update(vectors.itemId(), vectors.embedding());
+            } else {
+                binaryQuantizedIndex.remove(vectors.itemId());
+            }
+            log.debug("Indexed item ID: {}", vectors.itemId());
+        }
+
+        if (multiVectorEnabled) {
+            saveItemFieldVectors(vectors);
+        }
+    }
+
+    /**
+     * Заполняет укороченные векторы у товаров, проиндексированных до их появления.
+     * Полный вектор уже есть, поэтому OpenAI не вызывается.
+     */
+    public int backfillShortEmbeddings() {
+        int total = 0;
+        List<Map<String, Object>> batch;
+        do {
+            batch = searchRepository.findItemsWithoutShortEmbedding(BACKFILL_BATCH_SIZE);
+            List<Object[]> updates = new ArrayList<>(batch.size());
+            for (Map<String, Object> row : batch) {
+                try {
+                    PGvector full = new PGvector(row.get("embedding").toString());
+                    PGvector shortened = EmbeddingService.truncate(full, EmbeddingService.SHORT_DIMENSIONS);
+                    updates.add(new Object[]{shortened.toString(), row.get("id")});
+                } catch (Exception e) {
+                    log.error("Failed to truncate embedding of item {}: {}", row.get("id"), e.getMessage());
+                }
+            }
+            searchRepository.updateShortEmbeddings(updates);
+            total += updates.size();
+            // Если ни одна строка не обновилась, выходим, чтобы не зациклиться
+            if (updates.isEmpty()) break;
+        } while (batch.size() == BACKFILL_BATCH_SIZE);
+
+        if (total > 0) {
+            log.info("Backfilled short embeddings for {} items", total);
         }
+        return total;
+    }
+
+    /**
+     * Заменяет векторы полей товара (режим MULTI_VECTOR)
+     */
+    private void saveItemFieldVectors(ItemVectors vectors) {
+        Item item = itemRepository.getReferenceById(vectors.itemId());
+        List<ItemFieldEmbedding> fieldEmbeddings = new ArrayList<>();
+        vectors.fieldEmbeddings().forEach((field, fieldEmbedding) ->
+                fieldEmbeddings.add(ItemFieldEmbedding.builder()
+                        .item(item)
+                        .field(field)
+                        .embedding(fieldEmbedding)
+                        .build()));
+
+        itemFieldEmbeddingRepository.deleteByItemId(vectors.itemId());
+        itemFieldEmbeddingRepository.flush();
+        itemFieldEmbeddingRepository.saveAll(fieldEmbeddings);
+        log.debug("Indexed {} field vectors for item {}", fieldEmbeddings.size(), vectors.itemId());
     }
 
     /**
@@ -188,11 +313,65 @@ public class IndexingService {
     }
 
     /**
-     * Индексирует товар по ID
+     * Ставит товар в фоновую индексацию после коммита текущей транзакции
+     * (без транзакции - сразу). Товар перечитывается из БД, поэтому
+     * индексируется уже закоммиченное состояние.
+     */
+    public void indexItemAfterCommit(Long itemId) {
+        if (itemId == null) return;
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submitItemIndexing(itemId);
+                }
+            });
+        } else {
+            submitItemIndexing(itemId);
+        }
+    }
+
+    private void submitItemIndexing(Long itemId) {
+        try {
+            itemIndexExecutor.execute(() -> {
+                try {
+                    indexItemById(itemId);
+                    log.info("Item {} indexed for search", itemId);
+                } catch (Exception e) {
+                    log.error("Failed to index item {}: {}", itemId, e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("Item {} not indexed: indexing executor is shut down", itemId);
+        }
+    }
+
+    private record ItemTexts(Long itemId, boolean active, String text,
+                             Map<ItemFieldEmbedding.Field, String> fieldTexts) {
+    }
+
+    private record ItemVectors(Long itemId, boolean active, PGvector embedding,
+                               Map<ItemFieldEmbedding.Field, PGvector> fieldEmbeddings) {
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        itemIndexExecutor.shutdownNow();
+    }
+
+    /**
+     * Индексирует товар по ID в три шага: короткое чтение, вызовы OpenAI
+     * без транзакции, короткая запись векторов. Соединение из пула
+     * не держится, пока идёт HTTP-запрос к OpenAI.
      */
-    @Transactional
     public void indexItemById(Long itemId) {
-        itemRepository.findById(itemId).ifPresent(this::indexItem);
+        ItemTexts texts = transactionTemplate.execute(status ->
+                itemRepository.findById(itemId).map(this::itemTexts).orElse(null));
+        if (texts == null) return;
+
+        ItemVectors vectors = embedItem(texts);
+        transactionTemplate.executeWithoutResult(status -> saveItemVectors(vectors));
     }
 
     /**
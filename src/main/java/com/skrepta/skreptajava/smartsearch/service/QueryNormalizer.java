@@ -0,0 +1,140 @@
+package com.skrepta.skreptajava.smartsearch.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Нормализация поисковых запросов перед генерацией embedding:
+ * Unicode NFKC, нижний регистр, свёртка пунктуации и пробелов,
+ * приведение латинской транслитерации к словам каталога и исправление опечаток.
+ * Одинаковые по смыслу запросы получают один ключ кэша и один вызов OpenAI.
+ */
+@Slf4j
+@Service
+public class QueryNormalizer {
+
+    private static final int MIN_CORRECTION_LENGTH = 5;
+
+    private final boolean spellCorrectionEnabled;
+
+    private volatile SpellDictionary dictionary = SpellDictionary.empty();
+
+    private final AtomicLong transliterated = new AtomicLong();
+    private final AtomicLong corrected = new AtomicLong();
+
+    public QueryNormalizer(@Value("${search.spell-correction.enabled:true}") boolean spellCorrectionEnabled) {
+        this.spellCorrectionEnabled = spellCorrectionEnabled;
+    }
+
+    /**
+     * Полная нормализация запроса: свёртка + слова каталога вместо транслита и опечаток
+     */
+    public String normalize(String query) {
+        String folded = fold(query);
+        if (folded.isEmpty()) {
+            return folded;
+        }
+
+        SpellDictionary current = dictionary;
+        if (current.size() == 0) {
+            return folded;
+        }
+
+        String[] tokens = folded.split(" ");
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = normalizeToken(tokens[i], current);
+        }
+        String normalized = String.join(" ", tokens);
+
+        if (!normalized.equals(folded)) {
+            log.debug("Query normalized: '{}' -> '{}'", query, normalized);
+        }
+        return normalized;
+    }
+
+    private String normalizeToken(String token, SpellDictionary current) {
+        // Слово каталога не заменяем: у другого слова может быть тот же латинский ключ
+        if (current.contains(token)) {
+            return token;
+        }
+
+        String known = current.exact(token);
+        if (known != null) {
+            if (!known.equals(token)) {
+                transliterated.incrementAndGet();
+            }
+            return known;
+        }
+
+        if (!spellCorrectionEnabled || token.length() < MIN_CORRECTION_LENGTH || isNumeric(token)) {
+            return token;
+        }
+
+        String correction = current.correct(token);
+        if (correction != null) {
+            corrected.incrementAndGet();
+            return correction;
+        }
+        return token;
+    }
+
+    /**
+     * Свёртка текста: NFKC, нижний регистр, ё → е,
+     * всё кроме букв и цифр превращается в одиночные пробелы
+     */
+    public static String fold(String text) {
+        if (text == null) {
+            return "";
+        }
+        String lower = Normalizer.normalize(text, Normalizer.Form.NFKC)
+                .toLowerCase(Locale.ROOT)
+                .replace('ё', 'е');
+
+        StringBuilder sb = new StringBuilder(lower.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < lower.length(); i++) {
+            char c = lower.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (pendingSpace && sb.length() > 0) {
+                    sb.append(' ');
+                }
+                sb.append(c);
+                pendingSpace = false;
+            } else {
+                pendingSpace = true;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Обновляет словарь (вызывается при перестроении индекса подсказок)
+     * @param frequencies слова каталога после {@link #fold(String)} и их частота
+     */
+    public void updateDictionary(Map<String, Long> frequencies) {
+        dictionary = SpellDictionary.build(frequencies, MIN_CORRECTION_LENGTH);
+    }
+
+    public NormalizerStats getStats() {
+        return new NormalizerStats(dictionary.size(), transliterated.get(), corrected.get());
+    }
+
+    private static boolean isNumeric(String token) {
+        for (int i = 0; i < token.length(); i++) {
+            if (!Character.isDigit(token.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    public record NormalizerStats(
+            int dictionarySize,
+            long transliteratedTokens,
+            long correctedTokens
+    ) {}
+}
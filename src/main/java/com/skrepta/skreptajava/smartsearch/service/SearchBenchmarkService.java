@@ -0,0 +1,173 @@
+package com.skrepta.skreptajava.smartsearch.service;
+
+import com.pgvector.PGvector;
+import com.skrepta.skreptajava.smartsearch.dto.SearchBenchmarkRequest;
+import com.skrepta.skreptajava.smartsearch.repository.SearchRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Сравнение режимов векторного поиска товаров на одном наборе запросов:
+ * задержка (mean/p50/p95), объём хранения векторов и пересечение
+ * выдачи с базовым режимом SINGLE (как прокси качества).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SearchBenchmarkService {
+
+    private static final List<String> ALL_MODES = List.of(
+            SearchService.MODE_SINGLE,
+            SearchService.MODE_MULTI_VECTOR,
+            SearchService.MODE_TWO_STAGE,
+            SearchService.MODE_BINARY
+    );
+
+    private final SearchService searchService;
+    private final EmbeddingService embeddingService;
+    private final QueryNormalizer queryNormalizer;
+    private final SearchRepository searchRepository;
+    private final BinaryQuantizedIndex binaryQuantizedIndex;
+
+    public Map<String, Object> run(SearchBenchmarkRequest request) {
+        List<String> modes = request.getModes() == null || request.getModes().isEmpty()
+                ? ALL_MODES
+                : request.getModes().stream().map(String::toUpperCase).toList();
+        int iterations = Math.max(1, request.getIterations() != null ? request.getIterations() : 5);
+        int limit = Math.min(100, request.getLimit() != null ? request.getLimit() : 20);
+
+        // Вектора запросов считаем заранее: OpenAI не должен попадать в замер
+        List<PGvector> embeddings = new ArrayList<>();
+        for (String query : request.getQueries()) {
+            PGvector embedding = embeddingService.generateEmbedding(queryNormalizer.normalize(query));
+            if (embedding != null) {
+                embeddings.add(embedding);
+            }
+        }
+
+        List<Set<Long>> baseline = new ArrayList<>();
+        for (PGvector embedding : embeddings) {
+            baseline.add(ids(searchService.findItems(embedding, limit, SearchService.MODE_SINGLE)));
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("queries", embeddings.size());
+        report.put("iterations", iterations);
+        report.put("limit", limit);
+
+        for (String mode : modes) {
+            report.put(mode, runMode(mode, embeddings, baseline, iterations, limit));
+        }
+
+        var binaryStats = binaryQuantizedIndex.getStats();
+        Map<String, Object> binary = new LinkedHashMap<>();
+        binary.put("vectors", binaryStats.vectors());
+        binary.put("bits_per_vector", binaryStats.bitsPerVector());
+        binary.put("memory_bytes", binaryStats.memoryBytes());
+        binary.put("float_equivalent_bytes", binaryStats.floatEquivalentBytes());
+        report.put("binary_index", binary);
+
+        log.info("Search benchmark finished: {}", report);
+        return report;
+    }
+
+    private Map<String, Object> runMode(String mode, List<PGvector> embeddings, List<Set<Long>> baseline,
+                                        int iterations, int limit) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        if (!searchService.supportsMode(mode)) {
+            // Иначе замерили бы SINGLE под чужим именем
+            result.put("error", "Mode " + mode + " is disabled (search.multi-vector.enabled=false)");
+            return result;
+        }
+        try {
+            // Прогрев: первый проход не учитываем
+            for (PGvector embedding : embeddings) {
+                searchService.findItems(embedding, limit, mode);
+            }
+
+            long[] latencies = new long[embeddings.size() * iterations];
+            double overlapSum = 0;
+            int n = 0;
+            for (int iteration = 0; iteration < iterations; iteration++) {
+                for (int q = 0; q < embeddings.size(); q++) {
+                    long start = System.nanoTime();
+                    List<Map<String, Object>> rows = searchService.findItems(embeddings.get(q), limit, mode);
+                    latencies[n++] = System.nanoTime() - start;
+                    if (iteration == 0) {
+                        overlapSum += overlap(baseline.get(q), ids(rows));
+                    }
+                }
+            }
+
+            Arrays.sort(latencies);
+            result.put("mean_ms", millis((long) Arrays.stream(latencies).average().orElse(0)));
+            result.put("p50_ms", millis(percentile(latencies, 0.50)));
+            result.put("p95_ms", millis(percentile(latencies, 0.95)));
+            result.put("overlap_with_single", embeddings.isEmpty() ? 0 : round(overlapSum / embeddings.size()));
+            result.put("storage_bytes", storageBytes(mode));
+            if (SearchService.MODE_TWO_STAGE.equals(mode)) {
+                // Полнота первого этапа зависит от этих двух чисел
+                int candidates = searchService.twoStageCandidates(limit);
+                result.put("candidates", candidates);
+                result.put("ef_search", SearchRepository.efSearchFor(candidates));
+            }
+        } catch (Exception e) {
+            log.error("Benchmark failed for mode {}: {}", mode, e.getMessage());
+            result.put("error", e.getMessage());
+        }
+        return result;
+    }
+
+    private long storageBytes(String mode) {
+        return switch (mode) {
+            case SearchService.MODE_MULTI_VECTOR -> searchRepository.itemFieldEmbeddingStorageBytes();
+            // Объём, который сканирует первый этап
+            case SearchService.MODE_TWO_STAGE -> searchRepository.itemShortEmbeddingStorageBytes();
+            // Память бинарного индекса в JVM
+            case SearchService.MODE_BINARY -> binaryQuantizedIndex.getStats().memoryBytes();
+            default -> searchRepository.itemEmbeddingStorageBytes();
+        };
+    }
+
+    private static Set<Long> ids(List<Map<String, Object>> rows) {
+        Set<Long> ids = new HashSet<>();
+        for (Map<String, Object> row : rows) {
+            ids.add(((Number) row.get("id")).longValue());
+        }
+        return ids;
+    }
+
+    /**
+     * Доля результатов базового режима, найденных и в сравниваемом
+     */
+    private static double overlap(Set<Long> baseline, Set<Long> candidate) {
+        if (baseline.isEmpty()) {
+            return candidate.isEmpty() ? 1.0 : 0.0;
+        }
+        long common = candidate.stream().filter(baseline::contains).count();
+        return (double) common / baseline.size();
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int idx = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(idx, sorted.length - 1))];
+    }
+
+    private static double millis(long nanos) {
+        return round(nanos / 1_000_000.0);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+}
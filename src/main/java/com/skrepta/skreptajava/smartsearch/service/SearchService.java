@@ -10,13 +10,16 @@ import com.skrepta.skreptajava.smartsearch.dto.SearchResultItem;
 import com.skrepta.skreptajava.smartsearch.repository.SearchRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Slf4j
 @Service
@@ -28,9 +31,32 @@ public class SearchService {
     private final ItemService itemService;
     private final ShopService shopService;
     private final CategoryService categoryService;
+    private final QueryNormalizer queryNormalizer;
+    private final BinaryQuantizedIndex binaryQuantizedIndex;
 
     private static final double MIN_SCORE_THRESHOLD = 0.5; // Снизил до 50%
 
+    public static final String MODE_SINGLE = "SINGLE";
+    public static final String MODE_MULTI_VECTOR = "MULTI_VECTOR";
+    public static final String MODE_TWO_STAGE = "TWO_STAGE";
+    public static final String MODE_BINARY = "BINARY";
+
+    // Без векторов полей режим MULTI_VECTOR работает как SINGLE
+    @Value("${search.multi-vector.enabled:false}")
+    private boolean multiVectorEnabled;
+
+    // Кандидатов-векторов полей на один результат (у товара до трёх векторов)
+    @Value("${search.multi-vector.candidate-factor:10}")
+    private int multiVectorCandidateFactor;
+
+    // Сколько кандидатов отбирает первый этап TWO_STAGE (больше = выше полнота, медленнее)
+    @Value("${search.two-stage.candidates:300}")
+    private int twoStageCandidates;
+
+    // Сколько кандидатов по расстоянию Хэмминга пересчитывается точно (mode=BINARY)
+    @Value("${search.binary.candidates:200}")
+    private int binaryCandidates;
+
     /**
      * Выполняет семантический поиск по всем типам объектов
      * С FALLBACK на keyword search если AI недоступен
@@ -40,25 +66,35 @@ public class SearchService {
         log.info("Searching for: '{}' (type: {}, limit: {})", 
                 request.getQuery(), request.getType(), request.getLimit());
 
+        String normalizedQuery = queryNormalizer.normalize(request.getQuery());
+        if (normalizedQuery.isEmpty()) {
+            normalizedQuery = request.getQuery().trim();
+        }
+
+        // Фильтр по категории включает все подкатегории; неизвестная категория - 404, а не пустой ответ
+        List<Long> categoryIds = request.getCategoryId() != null
+                ? categoryService.getSubtreeIds(request.getCategoryId())
+                : null;
+
         // Пытаемся использовать AI semantic search
         try {
-            return semanticSearch(request);
+            return semanticSearch(request, normalizedQuery, categoryIds);
             
         } catch (Exception e) {
             log.warn("⚠️ Semantic search failed (OpenAI unavailable?), falling back to keyword search: {}", 
                     e.getMessage());
             
             // FALLBACK: Простой текстовый поиск
-            return keywordSearchFallback(request);
+            return keywordSearchFallback(request, normalizedQuery, categoryIds);
         }
     }
 
     /**
      * AI-powered semantic search (основной метод)
      */
-    private SearchResponse semanticSearch(SearchRequest request) {
-        // 1. Генерируем вектор для поискового запроса
-        PGvector queryEmbedding = embeddingService.generateEmbedding(request.getQuery());
+    private SearchResponse semanticSearch(SearchRequest request, String normalizedQuery, List<Long> categoryIds) {
+        // 1. Генерируем вектор для нормализованного запроса
+        PGvector queryEmbedding = embeddingService.generateEmbedding(normalizedQuery);
         if (queryEmbedding == null) {
             throw new RuntimeException("Failed to generate embedding");
         }
@@ -67,15 +103,15 @@ public class SearchService {
 
         // 2. Ищем по каждому типу объектов
         if (request.getType() == null || "ITEM".equals(request.getType())) {
-            allResults.addAll(searchItemsInternal(queryEmbedding, request.getLimit()));
+            allResults.addAll(searchItemsInternal(queryEmbedding, request.getLimit(), request.getMode(), categoryIds));
         }
 
         if (request.getType() == null || "SHOP".equals(request.getType())) {
-            allResults.addAll(searchShopsInternal(queryEmbedding, request.getLimit()));
+            allResults.addAll(searchShopsInternal(queryEmbedding, request.getLimit(), categoryIds));
         }
 
         if (request.getType() == null || "CATEGORY".equals(request.getType())) {
-            allResults.addAll(searchCategoriesInternal(queryEmbedding, request.getLimit()));
+            allResults.addAll(inCategories(searchCategoriesInternal(queryEmbedding, request.getLimit()), categoryIds));
         }
 
         // 3. Сортируем по релевантности и фильтруем
@@ -90,6 +126,7 @@ public class SearchService {
 
         return SearchResponse.builder()
                 .query(request.getQuery())
+                .normalizedQuery(normalizedQuery)
                 .totalResults(filteredResults.size())
                 .results(filteredResults)
                 .isFallback(false) // AI search успешен
@@ -99,23 +136,26 @@ public class SearchService {
     /**
      * FALLBACK: Простой keyword search (когда OpenAI недоступен)
      */
-    private SearchResponse keywordSearchFallback(SearchRequest request) {
-        log.info("🔍 Using FALLBACK keyword search for: '{}'", request.getQuery());
+    private SearchResponse keywordSearchFallback(SearchRequest request, String normalizedQuery, List<Long> categoryIds) {
+        // ILIKE ищет по исходному тексту: после свёртки ё → е и исправлений
+        // запрос перестал бы совпадать с названиями как они записаны в БД
+        String keywordQuery = request.getQuery().trim();
+        log.info("🔍 Using FALLBACK keyword search for: '{}'", keywordQuery);
 
         List<SearchResultItem> allResults = new ArrayList<>();
 
         try {
             // Keyword search по каждому типу
             if (request.getType() == null || "ITEM".equals(request.getType())) {
-                allResults.addAll(keywordSearchItems(request.getQuery(), request.getLimit()));
+                allResults.addAll(keywordSearchItems(keywordQuery, request.getLimit(), categoryIds));
             }
 
             if (request.getType() == null || "SHOP".equals(request.getType())) {
-                allResults.addAll(keywordSearchShops(request.getQuery(), request.getLimit()));
+                allResults.addAll(keywordSearchShops(keywordQuery, request.getLimit(), categoryIds));
             }
 
             if (request.getType() == null || "CATEGORY".equals(request.getType())) {
-                allResults.addAll(keywordSearchCategories(request.getQuery(), request.getLimit()));
+                allResults.addAll(inCategories(keywordSearchCategories(keywordQuery, request.getLimit()), categoryIds));
             }
 
             // Сортируем и обрезаем
@@ -128,6 +168,7 @@ public class SearchService {
 
             return SearchResponse.builder()
                     .query(request.getQuery())
+                    .normalizedQuery(normalizedQuery)
                     .totalResults(results.size())
                     .results(results)
                     .isFallback(true) // Это fallback!
@@ -152,9 +193,56 @@ public class SearchService {
     // SEMANTIC SEARCH - внутренние методы
     // ============================================
 
-    private List<SearchResultItem> searchItemsInternal(PGvector queryEmbedding, int limit) {
+    /**
+     * Сырые результаты векторного поиска товаров в выбранном режиме
+     */
+    public List<Map<String, Object>> findItems(PGvector queryEmbedding, int limit, String mode) {
+        if (MODE_MULTI_VECTOR.equalsIgnoreCase(mode) && multiVectorEnabled) {
+            return searchRepository.searchItemsMaxSim(queryEmbedding, limit * multiVectorCandidateFactor, limit);
+        }
+        if (MODE_TWO_STAGE.equalsIgnoreCase(mode)) {
+            PGvector shortEmbedding = EmbeddingService.truncate(queryEmbedding, EmbeddingService.SHORT_DIMENSIONS);
+            return searchRepository.searchItemsTwoStage(
+                    shortEmbedding, queryEmbedding, twoStageCandidates(limit), limit);
+        }
+        if (MODE_BINARY.equalsIgnoreCase(mode)) {
+            List<Long> candidates = binaryQuantizedIndex.candidates(queryEmbedding, Math.max(binaryCandidates, limit));
+            if (!candidates.isEmpty()) {
+                return searchRepository.searchItemsByIds(queryEmbedding, candidates, limit);
+            }
+            // Индекс ещё не загружен - обычный поиск
+        }
+        return searchRepository.searchItems(queryEmbedding, limit);
+    }
+
+    /**
+     * Кандидатов первого этапа TWO_STAGE для выдачи размера limit
+     */
+    public int twoStageCandidates(int limit) {
+        return Math.max(twoStageCandidates, limit);
+    }
+
+    /**
+     * Режим доступен на этом экземпляре (для MULTI_VECTOR нужны векторы полей)
+     */
+    public boolean supportsMode(String mode) {
+        return !MODE_MULTI_VECTOR.equalsIgnoreCase(mode) || multiVectorEnabled;
+    }
+
+    /**
+     * Поиск товаров с фильтром по категориям магазина. Кандидаты TWO_STAGE/BINARY/MULTI_VECTOR
+     * о категориях не знают, поэтому с фильтром всегда точный поиск с условием в SQL
+     */
+    public List<Map<String, Object>> findItems(PGvector queryEmbedding, int limit, String mode, List<Long> categoryIds) {
+        if (categoryIds == null) {
+            return findItems(queryEmbedding, limit, mode);
+        }
+        return searchRepository.searchItems(queryEmbedding, categoryIds, limit);
+    }
+
+    private List<SearchResultItem> searchItemsInternal(PGvector queryEmbedding, int limit, String mode, List<Long> categoryIds) {
         try {
-            List<Map<String, Object>> rawResults = searchRepository.searchItems(queryEmbedding, limit);
+            List<Map<String, Object>> rawResults = findItems(queryEmbedding, limit, mode, categoryIds);
             
             return rawResults.stream()
                     .map(result -> {
@@ -180,9 +268,9 @@ public class SearchService {
         }
     }
 
-    private List<SearchResultItem> searchShopsInternal(PGvector queryEmbedding, int limit) {
+    private List<SearchResultItem> searchShopsInternal(PGvector queryEmbedding, int limit, List<Long> categoryIds) {
         try {
-            List<Map<String, Object>> rawResults = searchRepository.searchShops(queryEmbedding, limit);
+            List<Map<String, Object>> rawResults = searchRepository.searchShops(queryEmbedding, categoryIds, limit);
             
             return rawResults.stream()
                     .map(result -> {
@@ -236,14 +324,23 @@ public class SearchService {
         }
     }
 
+    /**
+     * Категории в выдаче - только из выбранного поддерева
+     */
+    private static List<SearchResultItem> inCategories(List<SearchResultItem> results, List<Long> categoryIds) {
+        if (categoryIds == null) return results;
+        Set<Long> allowed = new HashSet<>(categoryIds);
+        return results.stream().filter(r -> allowed.contains(r.getId())).toList();
+    }
+
     // ============================================
     // FALLBACK: KEYWORD SEARCH - внутренние методы
     // ============================================
 
-    private List<SearchResultItem> keywordSearchItems(String query, int limit) {
+    private List<SearchResultItem> keywordSearchItems(String query, int limit, List<Long> categoryIds) {
         try {
             List<Map<String, Object>> rawResults = 
-                searchRepository.keywordSearchItems(query, limit);
+                searchRepository.keywordSearchItems(query, categoryIds, limit);
             
             return rawResults.stream()
                     .map(result -> {
@@ -268,10 +365,10 @@ public class SearchService {
         }
     }
 
-    private List<SearchResultItem> keywordSearchShops(String query, int limit) {
+    private List<SearchResultItem> keywordSearchShops(String query, int limit, List<Long> categoryIds) {
         try {
             List<Map<String, Object>> rawResults = 
-                searchRepository.keywordSearchShops(query, limit);
+                searchRepository.keywordSearchShops(query, categoryIds, limit);
             
             return rawResults.stream()
                     .map(result -> {
@@ -0,0 +1,134 @@
+package com.skrepta.skreptajava.smartsearch.service;
+
+import com.skrepta.skreptajava.config.Transliterator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Неизменяемый словарь слов каталога для исправления опечаток.
+ * Слова хранятся по латинскому ключу транслитерации, поэтому "podarok", "подарок"
+ * и "подарак" сводятся к одному слову. Кандидаты с расстоянием 1 ищутся
+ * по индексу удалений (SymSpell), без перебора всего словаря.
+ */
+public final class SpellDictionary {
+
+    private static final SpellDictionary EMPTY = new SpellDictionary(Set.of(), Map.of(), Map.of());
+
+    // все слова каталога в исходном написании
+    private final Set<String> surfaces;
+    // латинский ключ -> самое частое написание слова
+    private final Map<String, Word> words;
+    // ключ с одной удалённой буквой -> исходные ключи
+    private final Map<String, List<String>> deletes;
+
+    private SpellDictionary(Set<String> surfaces, Map<String, Word> words, Map<String, List<String>> deletes) {
+        this.surfaces = surfaces;
+        this.words = words;
+        this.deletes = deletes;
+    }
+
+    public static SpellDictionary empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @param frequencies нормализованные слова каталога и их частота
+     * @param minCorrectionLength слова короче не участвуют в исправлении
+     */
+    public static SpellDictionary build(Map<String, Long> frequencies, int minCorrectionLength) {
+        Map<String, Word> words = new HashMap<>();
+        frequencies.forEach((surface, frequency) ->
+                words.merge(key(surface), new Word(surface, frequency),
+                        (a, b) -> a.frequency() >= b.frequency() ? a : b));
+
+        Map<String, List<String>> deletes = new HashMap<>();
+        for (String key : words.keySet()) {
+            if (key.length() < minCorrectionLength) continue;
+            for (int i = 0; i < key.length(); i++) {
+                String deleted = key.substring(0, i) + key.substring(i + 1);
+                deletes.computeIfAbsent(deleted, k -> new ArrayList<>(1)).add(key);
+            }
+        }
+        return new SpellDictionary(new HashSet<>(frequencies.keySet()), words, deletes);
+    }
+
+    public int size() {
+        return words.size();
+    }
+
+    /**
+     * Слово есть в каталоге именно в таком написании
+     */
+    public boolean contains(String token) {
+        return surfaces.contains(token);
+    }
+
+    /**
+     * Слово каталога с тем же латинским ключом (другая раскладка/алфавит) или null
+     */
+    public String exact(String token) {
+        Word word = words.get(key(token));
+        return word != null ? word.surface() : null;
+    }
+
+    /**
+     * Самое частое слово каталога на расстоянии одной правки
+     * (вставка, удаление, замена или перестановка соседних букв) или null
+     */
+    public String correct(String token) {
+        String key = key(token);
+        Word best = null;
+
+        List<String> candidates = new ArrayList<>();
+        candidates.addAll(deletes.getOrDefault(key, List.of()));
+        for (int i = 0; i < key.length(); i++) {
+            String deleted = key.substring(0, i) + key.substring(i + 1);
+            if (words.containsKey(deleted)) {
+                candidates.add(deleted);
+            }
+            candidates.addAll(deletes.getOrDefault(deleted, List.of()));
+        }
+
+        for (String candidate : candidates) {
+            if (!withinOneEdit(key, candidate)) continue;
+            Word word = words.get(candidate);
+            if (best == null || word.frequency() > best.frequency()) {
+                best = word;
+            }
+        }
+        return best != null ? best.surface() : null;
+    }
+
+    private static String key(String token) {
+        return Transliterator.toLatin(token);
+    }
+
+    /**
+     * Расстояние Дамерау-Левенштейна (с перестановкой соседних символов) не больше 1
+     */
+    private static boolean withinOneEdit(String a, String b) {
+        int lengthDiff = a.length() - b.length();
+        if (Math.abs(lengthDiff) > 1) return false;
+
+        int i = 0;
+        while (i < a.length() && i < b.length() && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        if (lengthDiff > 0) return a.substring(i + 1).equals(b.substring(i));
+        if (lengthDiff < 0) return a.substring(i).equals(b.substring(i + 1));
+        if (i == a.length()) return true;
+        if (a.substring(i + 1).equals(b.substring(i + 1))) return true;
+        return i + 1 < a.length()
+                && a.charAt(i) == b.charAt(i + 1)
+                && a.charAt(i + 1) == b.charAt(i)
+                && a.substring(i + 2).equals(b.substring(i + 2));
+    }
+
+    private record Word(String surface, long frequency) {
+    }
+}
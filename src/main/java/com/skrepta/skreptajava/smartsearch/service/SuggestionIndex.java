@@ -0,0 +1,399 @@
+package com.skrepta.skreptajava.smartsearch.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Неизменяемый сжатый префиксный индекс (radix trie) для автодополнения.
+ * В каждом узле заранее посчитан top-K подсказок по весу, поэтому
+ * поиск стоит O(длина префикса) и не зависит от размера каталога.
+ * Изменения ({@link #with}) копируют только узлы на пути затронутых терминов.
+ */
+public final class SuggestionIndex {
+
+    /**
+     * Максимальная длина индексируемого термина: дальше пользователи не печатают,
+     * а память под длинные хвосты растёт линейно
+     */
+    private static final int MAX_TERM_LENGTH = 32;
+
+    /**
+     * Сколько слов с начала текста индексируем как отдельные термины
+     * ("подарок для мамы" находится и по "мам")
+     */
+    private static final int MAX_WORD_STARTS = 4;
+
+    private static final SuggestionIndex EMPTY = new SuggestionIndex(new Node("", new Node[0], new Suggestion[0], new Suggestion[0]), 0);
+
+    private final Node root;
+    private final int size;
+
+    private SuggestionIndex(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    public static SuggestionIndex empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Строит индекс по набору подсказок
+     * @param suggestions подсказки с уже посчитанным весом
+     * @param topK сколько лучших подсказок хранить в каждом узле
+     */
+    public static SuggestionIndex build(Collection<Suggestion> suggestions, int topK) {
+        List<Term> terms = new ArrayList<>(suggestions.size() * 2);
+        for (Suggestion suggestion : suggestions) {
+            for (String term : terms(suggestion.text())) {
+                terms.add(new Term(term, suggestion));
+            }
+        }
+        if (terms.isEmpty()) {
+            return EMPTY;
+        }
+
+        // Отсортированные термины позволяют строить узлы по диапазонам,
+        // без промежуточного посимвольного дерева
+        Term[] sorted = terms.toArray(Term[]::new);
+        Arrays.sort(sorted, (a, b) -> a.key().compareTo(b.key()));
+        return new SuggestionIndex(buildChildren(sorted, 0, sorted.length, "", 0, List.of(), topK), suggestions.size());
+    }
+
+    /**
+     * Новый снимок с заменой части подсказок (path copying): узлы вне путей
+     * затронутых терминов общие со старым снимком, который продолжают читать запросы
+     * @param removed подсказки этого индекса (сравниваются по ссылке)
+     * @param added новые подсказки
+     * @param topK сколько лучших подсказок хранить в каждом узле
+     */
+    public SuggestionIndex with(Collection<Suggestion> removed, Collection<Suggestion> added, int topK) {
+        Node newRoot = root;
+        for (Suggestion suggestion : removed) {
+            for (String term : terms(suggestion.text())) {
+                newRoot = remove(newRoot, term, 0, suggestion, topK);
+            }
+        }
+        for (Suggestion suggestion : added) {
+            for (String term : terms(suggestion.text())) {
+                newRoot = insert(newRoot, term, 0, suggestion, topK);
+            }
+        }
+        return new SuggestionIndex(newRoot, Math.max(0, size - removed.size() + added.size()));
+    }
+
+    /**
+     * Возвращает лучшие подсказки для префикса (по убыванию веса)
+     */
+    public List<Suggestion> lookup(String prefix, int limit) {
+        String key = normalize(prefix);
+        if (key.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        Node node = root;
+        int pos = 0;
+        while (pos < key.length()) {
+            Node child = node.child(key.charAt(pos));
+            if (child == null) {
+                return List.of();
+            }
+            String label = child.label;
+            int remaining = key.length() - pos;
+            if (remaining <= label.length()) {
+                if (!label.startsWith(key.substring(pos))) {
+                    return List.of();
+                }
+                return child.take(limit);
+            }
+            if (!key.startsWith(label, pos)) {
+                return List.of();
+            }
+            pos += label.length();
+            node = child;
+        }
+        return node.take(limit);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Нормализация текста для индекса и запросов
+     */
+    static String normalize(String text) {
+        return QueryNormalizer.fold(text);
+    }
+
+    /**
+     * Термины подсказки: весь текст и хвосты, начинающиеся с первых слов
+     */
+    private static Set<String> terms(String text) {
+        String normalized = normalize(text);
+        Set<String> terms = new LinkedHashSet<>();
+        if (normalized.isEmpty()) {
+            return terms;
+        }
+        terms.add(truncate(normalized));
+
+        int words = 1;
+        for (int i = 0; i < normalized.length() && words < MAX_WORD_STARTS; i++) {
+            if (normalized.charAt(i) == ' ') {
+                terms.add(truncate(normalized.substring(i + 1)));
+                words++;
+            }
+        }
+        return terms;
+    }
+
+    private static String truncate(String term) {
+        return term.length() > MAX_TERM_LENGTH ? term.substring(0, MAX_TERM_LENGTH) : term;
+    }
+
+    /**
+     * Подсказка: тип объекта ("ITEM", "SHOP", "CATEGORY", "TAG"), его ID,
+     * отображаемый текст и вес популярности
+     */
+    public record Suggestion(String type, Long id, String text, long weight) {
+    }
+
+    // ============================================
+    // Узлы
+    // ============================================
+
+    private static final class Node {
+        private final String label;
+        private final char[] firstChars;
+        private final Node[] children;
+        // Подсказки, термин которых заканчивается в этом узле
+        private final Suggestion[] terminals;
+        private final Suggestion[] top;
+
+        private Node(String label, Node[] children, Suggestion[] terminals, Suggestion[] top) {
+            this.label = label;
+            this.children = children;
+            this.terminals = terminals;
+            this.top = top;
+            this.firstChars = new char[children.length];
+            for (int i = 0; i < children.length; i++) {
+                firstChars[i] = children[i].label.charAt(0);
+            }
+        }
+
+        private Node child(char c) {
+            int idx = indexOf(c);
+            return idx >= 0 ? children[idx] : null;
+        }
+
+        private int indexOf(char c) {
+            return Arrays.binarySearch(firstChars, c);
+        }
+
+        private Node with(Suggestion[] terminals, Node[] children, int topK) {
+            return new Node(label, children, terminals, mergeTop(Arrays.asList(terminals), children, topK));
+        }
+
+        private Node relabel(String newLabel) {
+            return new Node(newLabel, children, terminals, top);
+        }
+
+        /**
+         * Узел без своих подсказок с единственным ребёнком сливается с ним (сжатие цепочки)
+         */
+        private Node compact() {
+            if (terminals.length > 0 || children.length != 1) {
+                return this;
+            }
+            Node only = children[0];
+            return new Node(label + only.label, only.children, only.terminals, only.top);
+        }
+
+        private boolean isEmpty() {
+            return terminals.length == 0 && children.length == 0;
+        }
+
+        private List<Suggestion> take(int limit) {
+            return Arrays.asList(top).subList(0, Math.min(limit, top.length));
+        }
+    }
+
+    /**
+     * Узел для диапазона терминов [lo, hi), у которых совпадают символы с позиции labelStart
+     * до depth. Ребро продлевается до общего префикса диапазона (сжатие цепочек).
+     */
+    private static Node buildRange(Term[] terms, int lo, int hi, int labelStart, int depth, int topK) {
+        String first = terms[lo].key();
+        String last = terms[hi - 1].key();
+        int end = depth;
+        while (end < first.length() && end < last.length() && first.charAt(end) == last.charAt(end)) {
+            end++;
+        }
+
+        // Термины, заканчивающиеся в этом узле, в отсортированном порядке идут первыми
+        List<Suggestion> terminals = new ArrayList<>();
+        int i = lo;
+        while (i < hi && terms[i].key().length() == end) {
+            terminals.add(terms[i].suggestion());
+            i++;
+        }
+        return buildChildren(terms, i, hi, first.substring(labelStart, end), end, terminals, topK);
+    }
+
+    private static Node buildChildren(Term[] terms, int lo, int hi, String label, int end,
+                                      List<Suggestion> terminals, int topK) {
+        List<Node> children = new ArrayList<>();
+        int i = lo;
+        while (i < hi) {
+            char c = terms[i].key().charAt(end);
+            int j = i;
+            while (j < hi && terms[j].key().charAt(end) == c) {
+                j++;
+            }
+            children.add(buildRange(terms, i, j, end, end + 1, topK));
+            i = j;
+        }
+        Node[] frozen = children.toArray(Node[]::new);
+        return new Node(label, frozen, terminals.toArray(Suggestion[]::new), mergeTop(terminals, frozen, topK));
+    }
+
+    // ============================================
+    // Точечные изменения
+    // ============================================
+
+    /**
+     * Копия node с подсказкой, добавленной по термину key.
+     * node соответствует префиксу key длины pos.
+     */
+    private static Node insert(Node node, String key, int pos, Suggestion suggestion, int topK) {
+        if (pos == key.length()) {
+            Suggestion[] terminals = Arrays.copyOf(node.terminals, node.terminals.length + 1);
+            terminals[node.terminals.length] = suggestion;
+            return node.with(terminals, node.children, topK);
+        }
+
+        int idx = node.indexOf(key.charAt(pos));
+        if (idx < 0) {
+            Suggestion[] single = {suggestion};
+            Node leaf = new Node(key.substring(pos), new Node[0], single, single);
+            // binarySearch вернул -(точка вставки) - 1: дети остаются отсортированными
+            return node.with(node.terminals, insertChild(node.children, -(idx + 1), leaf), topK);
+        }
+
+        Node child = node.children[idx];
+        int common = commonPrefix(child.label, key, pos);
+        Node replacement;
+        if (common == child.label.length()) {
+            replacement = insert(child, key, pos + common, suggestion, topK);
+        } else {
+            // Термин расходится посреди ребра: ребро делится на общую часть и хвост
+            Node tail = child.relabel(child.label.substring(common));
+            Node split = new Node(child.label.substring(0, common), new Node[]{tail}, new Suggestion[0], tail.top);
+            replacement = insert(split, key, pos + common, suggestion, topK);
+        }
+        Node[] children = node.children.clone();
+        children[idx] = replacement;
+        return node.with(node.terminals, children, topK);
+    }
+
+    /**
+     * Копия node без подсказки по термину key; если её там нет - тот же node
+     */
+    private static Node remove(Node node, String key, int pos, Suggestion suggestion, int topK) {
+        if (pos == key.length()) {
+            int at = indexOfSame(node.terminals, suggestion);
+            if (at < 0) {
+                return node;
+            }
+            Suggestion[] terminals = new Suggestion[node.terminals.length - 1];
+            System.arraycopy(node.terminals, 0, terminals, 0, at);
+            System.arraycopy(node.terminals, at + 1, terminals, at, terminals.length - at);
+            return node.with(terminals, node.children, topK);
+        }
+
+        int idx = node.indexOf(key.charAt(pos));
+        if (idx < 0 || !key.startsWith(node.children[idx].label, pos)) {
+            return node;
+        }
+        Node child = node.children[idx];
+        Node replacement = remove(child, key, pos + child.label.length(), suggestion, topK);
+        if (replacement == child) {
+            return node;
+        }
+
+        Node[] children;
+        if (replacement.isEmpty()) {
+            children = new Node[node.children.length - 1];
+            System.arraycopy(node.children, 0, children, 0, idx);
+            System.arraycopy(node.children, idx + 1, children, idx, children.length - idx);
+        } else {
+            children = node.children.clone();
+            children[idx] = replacement.compact();
+        }
+        return node.with(node.terminals, children, topK);
+    }
+
+    private static Node[] insertChild(Node[] children, int at, Node child) {
+        Node[] result = new Node[children.length + 1];
+        System.arraycopy(children, 0, result, 0, at);
+        result[at] = child;
+        System.arraycopy(children, at, result, at + 1, children.length - at);
+        return result;
+    }
+
+    private static int commonPrefix(String label, String key, int pos) {
+        int i = 0;
+        while (i < label.length() && pos + i < key.length() && label.charAt(i) == key.charAt(pos + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int indexOfSame(Suggestion[] suggestions, Suggestion suggestion) {
+        for (int i = 0; i < suggestions.length; i++) {
+            if (suggestions[i] == suggestion) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * top-K узла из его собственных подсказок и top-K детей.
+     * Одна и та же подсказка может прийти по нескольким терминам - сравниваем по ссылке.
+     */
+    private static Suggestion[] mergeTop(List<Suggestion> terminals, Node[] children, int topK) {
+        if (terminals.isEmpty() && children.length == 1) {
+            return children[0].top;
+        }
+
+        List<Suggestion> candidates = new ArrayList<>(terminals);
+        for (Node child : children) {
+            candidates.addAll(Arrays.asList(child.top));
+        }
+        candidates.sort((a, b) -> Long.compare(b.weight(), a.weight()));
+
+        List<Suggestion> top = new ArrayList<>(Math.min(topK, candidates.size()));
+        for (Suggestion candidate : candidates) {
+            if (top.size() == topK) break;
+            boolean duplicate = false;
+            for (Suggestion taken : top) {
+                if (taken == candidate) {
+                    duplicate = true;
+                    break;
+                }
+            }
+            if (!duplicate) {
+                top.add(candidate);
+            }
+        }
+        return top.toArray(Suggestion[]::new);
+    }
+
+    private record Term(String key, Suggestion suggestion) {
+    }
+}
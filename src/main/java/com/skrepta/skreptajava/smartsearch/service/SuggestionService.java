@@ -0,0 +1,417 @@
+package com.skrepta.skreptajava.smartsearch.service;
+
+import com.skrepta.skreptajava.category.entity.Category;
+import com.skrepta.skreptajava.item.entity.Item;
+import com.skrepta.skreptajava.shop.entity.Shop;
+import com.skrepta.skreptajava.smartsearch.dto.SuggestionResponse;
+import com.skrepta.skreptajava.smartsearch.repository.SearchRepository;
+import com.skrepta.skreptajava.smartsearch.service.SuggestionIndex.Suggestion;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Автодополнение для строки поиска.
+ * Держит в памяти исходные записи (товары, магазины, категории) и неизменяемый
+ * префиксный индекс. Изменения применяются после коммита транзакции и затрагивают
+ * только узлы индекса на пути изменённых подсказок; полная сборка - при reload().
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SuggestionService {
+
+    private static final int TOP_K = 10;
+    private static final long FAVORITE_WEIGHT = 5;
+    private static final long CATEGORY_WEIGHT = 100;
+
+    private final SearchRepository searchRepository;
+    private final QueryNormalizer queryNormalizer;
+
+    private final Map<Long, ItemEntry> items = new ConcurrentHashMap<>();
+    private final Map<Long, Suggestion> shops = new ConcurrentHashMap<>();
+    private final Map<Long, Suggestion> categories = new ConcurrentHashMap<>();
+    // Агрегаты тегов и частоты слов меняются только под блокировкой сервиса
+    private final Map<String, TagEntry> tags = new HashMap<>();
+    private final Map<String, Long> words = new HashMap<>();
+    private boolean vocabularyChanged;
+
+    private volatile SuggestionIndex index = SuggestionIndex.empty();
+
+    // Пересборки словаря опечаток схлопываются: пока одна ждёт в очереди, новые не ставятся
+    private final AtomicBoolean dictionaryRebuildPending = new AtomicBoolean(false);
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "suggestion-dictionary-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Подсказки для префикса. Читает только текущий снимок индекса, без БД.
+     */
+    public List<SuggestionResponse> suggest(String prefix, int limit) {
+        return index.lookup(prefix, Math.min(limit, TOP_K)).stream()
+                .map(s -> SuggestionResponse.builder()
+                        .type(s.type())
+                        .id(s.id())
+                        .text(s.text())
+                        .weight(s.weight())
+                        .build())
+                .toList();
+    }
+
+    // ============================================
+    // Инкрементальные обновления
+    // ============================================
+
+    /**
+     * Запись собирается сразу (пока доступны ленивые коллекции),
+     * а в индекс попадает только после коммита: при откате подсказка не появится
+     */
+    public void updateItem(Item item) {
+        if (item == null || item.getId() == null) return;
+
+        if (!item.isActive()) {
+            removeItem(item.getId());
+            return;
+        }
+
+        Long itemId = item.getId();
+        List<String> itemTags = item.getTags() != null ? new ArrayList<>(item.getTags()) : List.of();
+        ItemEntry entry = new ItemEntry(
+                new Suggestion("ITEM", itemId, item.getTitle(), itemWeight(item.getViews(), item.getFavorites())),
+                itemTags);
+        afterCommit(() -> applyItem(itemId, entry));
+    }
+
+    public void removeItem(Long itemId) {
+        afterCommit(() -> applyItem(itemId, null));
+    }
+
+    public void updateShop(Shop shop) {
+        if (shop == null || shop.getId() == null) return;
+
+        if (!shop.isApproved()) {
+            removeShop(shop.getId());
+            return;
+        }
+
+        Long shopId = shop.getId();
+        int favorites = shop.getFavoritesCount() != null ? shop.getFavoritesCount() : 0;
+        Suggestion suggestion = new Suggestion("SHOP", shopId, shop.getName(), shopWeight(favorites));
+        afterCommit(() -> applyNamed(shops, shopId, suggestion));
+    }
+
+    public void removeShop(Long shopId) {
+        afterCommit(() -> applyNamed(shops, shopId, null));
+    }
+
+    public void updateCategory(Category category) {
+        if (category == null || category.getId() == null) return;
+
+        if (!Boolean.TRUE.equals(category.getIsActive())) {
+            removeCategory(category.getId());
+            return;
+        }
+
+        Long categoryId = category.getId();
+        Suggestion suggestion = new Suggestion("CATEGORY", categoryId, category.getName(), CATEGORY_WEIGHT);
+        afterCommit(() -> applyNamed(categories, categoryId, suggestion));
+    }
+
+    public void removeCategory(Long categoryId) {
+        afterCommit(() -> applyNamed(categories, categoryId, null));
+    }
+
+    private synchronized void applyItem(Long itemId, ItemEntry entry) {
+        ItemEntry previous = entry != null ? items.put(itemId, entry) : items.remove(itemId);
+        if (previous == null && entry == null) return;
+
+        Changes changes = new Changes();
+        if (previous != null) {
+            untrackItem(previous, changes);
+        }
+        if (entry != null) {
+            trackItem(entry, changes);
+        }
+        publish(changes);
+    }
+
+    private synchronized void applyNamed(Map<Long, Suggestion> target, Long id, Suggestion suggestion) {
+        Suggestion previous = suggestion != null ? target.put(id, suggestion) : target.remove(id);
+        if (previous == null && suggestion == null) return;
+
+        Changes changes = new Changes();
+        if (previous != null) {
+            changes.remove(previous);
+            countWords(previous.text(), -1);
+        }
+        if (suggestion != null) {
+            changes.add(suggestion);
+            countWords(suggestion.text(), 1);
+        }
+        publish(changes);
+    }
+
+    /**
+     * Подменяет снимок индекса; словарь опечаток пересобирается в фоне,
+     * только если появились новые слова или пропали старые
+     */
+    private void publish(Changes changes) {
+        index = index.with(changes.removed, changes.added, TOP_K);
+        if (vocabularyChanged) {
+            vocabularyChanged = false;
+            scheduleDictionaryRebuild();
+        }
+    }
+
+    private void trackItem(ItemEntry entry, Changes changes) {
+        changes.add(entry.suggestion());
+        countWords(entry.suggestion().text(), 1);
+        long weight = entry.suggestion().weight();
+        // Вес тега = суммарная популярность товаров с этим тегом
+        for (String tag : entry.tags()) {
+            countWords(tag, 1);
+            String key = SuggestionIndex.normalize(tag);
+            if (key.isEmpty()) continue;
+            TagEntry previous = tags.get(key);
+            TagEntry next;
+            if (previous == null) {
+                next = new TagEntry(new Suggestion("TAG", null, tag.trim(), weight), 1);
+            } else {
+                changes.remove(previous.suggestion());
+                next = previous.withItem(weight);
+            }
+            tags.put(key, next);
+            changes.add(next.suggestion());
+        }
+    }
+
+    private void untrackItem(ItemEntry entry, Changes changes) {
+        changes.remove(entry.suggestion());
+        countWords(entry.suggestion().text(), -1);
+        long weight = entry.suggestion().weight();
+        for (String tag : entry.tags()) {
+            countWords(tag, -1);
+            String key = SuggestionIndex.normalize(tag);
+            TagEntry previous = tags.get(key);
+            if (previous == null) continue;
+            changes.remove(previous.suggestion());
+            if (previous.items() <= 1) {
+                tags.remove(key);
+            } else {
+                TagEntry next = previous.withoutItem(weight);
+                tags.put(key, next);
+                changes.add(next.suggestion());
+            }
+        }
+    }
+
+    // ============================================
+    // Полная загрузка из БД
+    // ============================================
+
+    /**
+     * Полная загрузка при старте и периодически, чтобы подтянуть
+     * изменившиеся просмотры/избранное (они не обновляют индекс на каждый клик)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${search.suggest.reload-ms:600000}", fixedDelayString = "${search.suggest.reload-ms:600000}")
+    public void reload() {
+        try {
+            long startTime = System.currentTimeMillis();
+
+            Map<Long, List<String>> tagsByItem = new HashMap<>();
+            for (Map<String, Object> row : searchRepository.loadItemTags()) {
+                tagsByItem.computeIfAbsent(toLong(row.get("item_id")), id -> new ArrayList<>())
+                        .add((String) row.get("tag"));
+            }
+
+            Map<Long, ItemEntry> freshItems = new HashMap<>();
+            for (Map<String, Object> row : searchRepository.loadItemSuggestions()) {
+                Long id = toLong(row.get("id"));
+                long weight = itemWeight(toLong(row.get("views")), toLong(row.get("favorites")));
+                freshItems.put(id, new ItemEntry(
+                        new Suggestion("ITEM", id, (String) row.get("title"), weight),
+                        tagsByItem.getOrDefault(id, List.of())));
+            }
+
+            Map<Long, Suggestion> freshShops = new HashMap<>();
+            for (Map<String, Object> row : searchRepository.loadShopSuggestions()) {
+                Long id = toLong(row.get("id"));
+                freshShops.put(id, new Suggestion("SHOP", id, (String) row.get("title"), shopWeight(toLong(row.get("favorites")))));
+            }
+
+            Map<Long, Suggestion> freshCategories = new HashMap<>();
+            for (Map<String, Object> row : searchRepository.loadCategorySuggestions()) {
+                Long id = toLong(row.get("id"));
+                freshCategories.put(id, new Suggestion("CATEGORY", id, (String) row.get("title"), CATEGORY_WEIGHT));
+            }
+
+            rebuild(freshItems, freshShops, freshCategories);
+
+            log.info("Suggestion index reloaded in {}ms: {} items, {} shops, {} categories",
+                    System.currentTimeMillis() - startTime, items.size(), shops.size(), categories.size());
+        } catch (Exception e) {
+            log.error("Failed to reload suggestion index: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    private void scheduleDictionaryRebuild() {
+        if (dictionaryRebuildPending.compareAndSet(false, true)) {
+            rebuildExecutor.submit(() -> {
+                dictionaryRebuildPending.set(false);
+                try {
+                    Map<String, Long> snapshot;
+                    synchronized (this) {
+                        snapshot = new HashMap<>(words);
+                    }
+                    queryNormalizer.updateDictionary(snapshot);
+                } catch (Exception e) {
+                    log.error("Failed to rebuild spell dictionary: {}", e.getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * Полная сборка: новые записи, агрегаты тегов и слов, индекс и словарь с нуля
+     */
+    private synchronized void rebuild(Map<Long, ItemEntry> freshItems,
+                                      Map<Long, Suggestion> freshShops,
+                                      Map<Long, Suggestion> freshCategories) {
+        replace(items, freshItems);
+        replace(shops, freshShops);
+        replace(categories, freshCategories);
+        tags.clear();
+        words.clear();
+
+        Changes changes = new Changes();
+        items.values().forEach(entry -> trackItem(entry, changes));
+        for (Suggestion suggestion : shops.values()) {
+            changes.add(suggestion);
+            countWords(suggestion.text(), 1);
+        }
+        for (Suggestion suggestion : categories.values()) {
+            changes.add(suggestion);
+            countWords(suggestion.text(), 1);
+        }
+
+        index = SuggestionIndex.build(changes.added, TOP_K);
+        vocabularyChanged = false;
+        // Тот же словарь каталога используется для исправления опечаток в запросах
+        queryNormalizer.updateDictionary(new HashMap<>(words));
+    }
+
+    /**
+     * Применяет изменение после коммита текущей транзакции (без транзакции - сразу)
+     */
+    private void afterCommit(Runnable action) {
+        Runnable safe = () -> {
+            try {
+                action.run();
+            } catch (Exception e) {
+                log.error("Failed to update suggestion index: {}", e.getMessage());
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    safe.run();
+                }
+            });
+        } else {
+            safe.run();
+        }
+    }
+
+    /**
+     * Частоты слов каталога; флаг vocabularyChanged - если слово появилось или исчезло
+     */
+    private void countWords(String text, long delta) {
+        String folded = QueryNormalizer.fold(text);
+        if (folded.isEmpty()) return;
+        for (String word : folded.split(" ")) {
+            Long count = words.merge(word, delta, Long::sum);
+            if (count == null || count <= 0) {
+                words.remove(word);
+                vocabularyChanged = true;
+            } else if (count == delta) {
+                vocabularyChanged = true;
+            }
+        }
+    }
+
+    private static <V> void replace(Map<Long, V> target, Map<Long, V> fresh) {
+        target.keySet().retainAll(fresh.keySet());
+        target.putAll(fresh);
+    }
+
+    private static long itemWeight(long views, long favorites) {
+        return 1 + views + FAVORITE_WEIGHT * favorites;
+    }
+
+    private static long shopWeight(long favorites) {
+        return 1 + FAVORITE_WEIGHT * favorites;
+    }
+
+    private static Long toLong(Object value) {
+        return value == null ? 0L : ((Number) value).longValue();
+    }
+
+    private record ItemEntry(Suggestion suggestion, List<String> tags) {
+    }
+
+    private record TagEntry(Suggestion suggestion, int items) {
+        TagEntry withItem(long weight) {
+            return new TagEntry(new Suggestion("TAG", null, suggestion.text(), suggestion.weight() + weight), items + 1);
+        }
+
+        TagEntry withoutItem(long weight) {
+            return new TagEntry(new Suggestion("TAG", null, suggestion.text(), suggestion.weight() - weight), items - 1);
+        }
+    }
+
+    /**
+     * Набор изменений индекса. Подсказка, добавленная и удалённая в рамках одного
+     * набора (промежуточный вес тега), в индекс не попадает вовсе.
+     */
+    private static final class Changes {
+        private final Set<Suggestion> added = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final List<Suggestion> removed = new ArrayList<>();
+
+        void add(Suggestion suggestion) {
+            added.add(suggestion);
+        }
+
+        void remove(Suggestion suggestion) {
+            if (!added.remove(suggestion)) {
+                removed.add(suggestion);
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.skrepta.skreptajava.storage.controller;
+
+import com.skrepta.skreptajava.storage.dto.UploadConfirmRequest;
+import com.skrepta.skreptajava.storage.dto.UploadConfirmResponse;
+import com.skrepta.skreptajava.storage.dto.UploadSlotRequest;
+import com.skrepta.skreptajava.storage.dto.UploadSlotResponse;
+import com.skrepta.skreptajava.storage.service.UploadService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/uploads")
+@RequiredArgsConstructor
+public class UploadController {
+
+    private final UploadService uploadService;
+
+    /**
+     * Слот для прямой загрузки картинки в хранилище (подписанный PUT)
+     */
+    @PostMapping("/slots")
+    @PreAuthorize("hasRole('SHOP') or hasRole('ADMIN')")
+    public ResponseEntity<UploadSlotResponse> createSlot(@Valid @RequestBody UploadSlotRequest request) {
+        return ResponseEntity.ok(uploadService.createSlot(request));
+    }
+
+    /**
+     * Подтвердить загрузку и привязать файлы к товару или магазину
+     */
+    @PostMapping("/confirm")
+    @PreAuthorize("hasRole('SHOP') or hasRole('ADMIN')")
+    public ResponseEntity<UploadConfirmResponse> confirm(@Valid @RequestBody UploadConfirmRequest request) {
+        return ResponseEntity.ok(uploadService.confirm(request));
+    }
+}
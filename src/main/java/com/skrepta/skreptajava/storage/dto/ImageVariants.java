@@ -0,0 +1,20 @@
+package com.skrepta.skreptajava.storage.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Ссылки на картинку в разных размерах.
+ * Пока уменьшенные копии не готовы, thumbnail и medium указывают на оригинал.
+ */
+@Data
+@Builder
+public class ImageVariants {
+    private String original;
+    private String thumbnail;
+    private String medium;
+
+    public static ImageVariants originalOnly(String url) {
+        return ImageVariants.builder().original(url).thumbnail(url).medium(url).build();
+    }
+}
@@ -0,0 +1,24 @@
+package com.skrepta.skreptajava.storage.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class UploadConfirmRequest {
+    @NotEmpty(message = "At least one slot is required")
+    private List<Long> slotIds;
+
+    @NotNull(message = "Target is required")
+    private Target target;
+
+    @NotNull(message = "Target ID is required")
+    private Long targetId;
+
+    public enum Target {
+        ITEM_IMAGES, // Добавить фото к товару
+        SHOP_LOGO    // Заменить логотип магазина (ровно один слот)
+    }
+}
@@ -0,0 +1,14 @@
+package com.skrepta.skreptajava.storage.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class UploadConfirmResponse {
+    private UploadConfirmRequest.Target target;
+    private Long targetId;
+    private List<String> fileUrls;
+}
@@ -0,0 +1,14 @@
+package com.skrepta.skreptajava.storage.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
+import lombok.Data;
+
+@Data
+public class UploadSlotRequest {
+    @NotBlank(message = "Content type is required")
+    private String contentType;
+
+    @Positive(message = "File size must be positive")
+    private long size;
+}
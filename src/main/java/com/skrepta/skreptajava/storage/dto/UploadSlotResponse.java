@@ -0,0 +1,21 @@
+package com.skrepta.skreptajava.storage.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Куда и как грузить файл: PUT на uploadUrl с перечисленными заголовками
+ */
+@Data
+@Builder
+public class UploadSlotResponse {
+    private Long slotId;
+    private String uploadUrl;
+    private String method;
+    private Map<String, String> headers;
+    private String fileUrl;
+    private Instant expiresAt;
+}
@@ -0,0 +1,67 @@
+package com.skrepta.skreptajava.storage.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Уменьшенная копия загруженной картинки (миниатюра для лент, средний размер для карточки).
+ * Оригинал не меняется; копии генерируются в фоне после загрузки.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(
+        name = "image_renditions",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"original_url", "variant"})
+)
+public class ImageRendition {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "original_url", nullable = false, length = 1024)
+    private String originalUrl;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Variant variant;
+
+    @Column(name = "object_key", nullable = false, length = 1024)
+    private String objectKey;
+
+    @Column(nullable = false, length = 1024)
+    private String url;
+
+    private int width;
+    private int height;
+
+    @Column(name = "size_bytes")
+    private long sizeBytes;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    public enum Variant {
+        THUMBNAIL(320),
+        MEDIUM(1024);
+
+        // Максимальная длина большей стороны в пикселях
+        private final int maxSide;
+
+        Variant(int maxSide) {
+            this.maxSide = maxSide;
+        }
+
+        public int getMaxSide() {
+            return maxSide;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.skrepta.skreptajava.storage.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Загруженный файл с ключом по содержимому (SHA-256) и счётчиком ссылок.
+ * Одинаковые фото хранятся в S3 один раз; объект удаляется, только когда
+ * счётчик дошёл до нуля. Строка с нулём живёт до удаления объекта из S3,
+ * чтобы повторная загрузка того же файла в это время не потеряла объект.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "stored_blobs")
+public class StoredBlob {
+
+    @Id
+    @Column(name = "object_key", length = 1024)
+    private String objectKey;
+
+    @Column(nullable = false, length = 64)
+    private String sha256;
+
+    @Column(name = "size_bytes", nullable = false)
+    private long sizeBytes;
+
+    @Column(name = "ref_count", nullable = false)
+    private int refCount;
+
+    // Объект точно лежит в S3 (PUT завершился)
+    @Column(nullable = false)
+    private boolean uploaded;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+}
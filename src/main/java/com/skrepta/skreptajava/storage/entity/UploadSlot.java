@@ -0,0 +1,48 @@
+package com.skrepta.skreptajava.storage.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Слот прямой загрузки: клиент получает подписанный PUT на objectKey и грузит
+ * файл в бакет сам, минуя сервер. Пока слот не подтверждён, файл ни к чему не привязан;
+ * просроченные слоты удаляются вместе с объектом.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "upload_slots", indexes = {
+        @Index(name = "idx_upload_slots_expires_at", columnList = "expires_at")
+})
+public class UploadSlot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "object_key", nullable = false, unique = true, length = 1024)
+    private String objectKey;
+
+    @Column(name = "owner_id", nullable = false)
+    private Long ownerId;
+
+    @Column(name = "content_type", nullable = false, length = 100)
+    private String contentType;
+
+    // Размер, заявленный клиентом; при подтверждении сверяется с фактическим
+    @Column(name = "size_bytes", nullable = false)
+    private long sizeBytes;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+}
@@ -0,0 +1,8 @@
+package com.skrepta.skreptajava.storage.event;
+
+/**
+ * Для загруженной картинки готовы уменьшенные копии.
+ * Публикуется из фонового потока обработки, вне транзакции.
+ */
+public record ImageRenditionsReadyEvent(String originalUrl) {
+}
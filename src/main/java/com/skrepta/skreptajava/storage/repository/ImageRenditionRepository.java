@@ -0,0 +1,48 @@
+package com.skrepta.skreptajava.storage.repository;
+
+import com.skrepta.skreptajava.storage.entity.ImageRendition;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ImageRenditionRepository extends JpaRepository<ImageRendition, Long> {
+
+    List<ImageRendition> findByOriginalUrlIn(Collection<String> originalUrls);
+
+    boolean existsByOriginalUrl(String originalUrl);
+
+    // Повторная обработка того же оригинала (фон + досчёт) не падает на уникальном ключе
+    @Modifying
+    @Transactional
+    @Query(value = """
+            INSERT INTO image_renditions (original_url, variant, object_key, url, width, height, size_bytes, created_at)
+            VALUES (:originalUrl, :variant, :objectKey, :url, :width, :height, :sizeBytes, now())
+            ON CONFLICT (original_url, variant) DO NOTHING
+            """, nativeQuery = true)
+    int insertIgnore(@Param("originalUrl") String originalUrl,
+                     @Param("variant") String variant,
+                     @Param("objectKey") String objectKey,
+                     @Param("url") String url,
+                     @Param("width") int width,
+                     @Param("height") int height,
+                     @Param("sizeBytes") long sizeBytes);
+
+    // Фото товаров и логотипы, для которых ещё нет уменьшенных копий
+    @Query(value = """
+            SELECT u.url FROM (
+                SELECT image_url AS url FROM item_images
+                UNION
+                SELECT logo_url FROM shops WHERE logo_url IS NOT NULL
+            ) u
+            WHERE NOT EXISTS (SELECT 1 FROM image_renditions r WHERE r.original_url = u.url)
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<String> findOriginalsWithoutRenditions(@Param("limit") int limit);
+}
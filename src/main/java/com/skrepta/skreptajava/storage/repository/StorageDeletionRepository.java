@@ -0,0 +1,108 @@
+package com.skrepta.skreptajava.storage.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * SQL очереди удаления объектов S3 (таблица storage_deletions)
+ */
+@Repository
+@RequiredArgsConstructor
+public class StorageDeletionRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Ставит ключи в очередь; уже стоящие в очереди пропускаются
+     */
+    public void enqueue(Collection<String> keys) {
+        if (keys.isEmpty()) return;
+        jdbcTemplate.batchUpdate("""
+            INSERT INTO storage_deletions (object_key, attempts, next_attempt_at, created_at)
+            VALUES (?, 0, now(), now())
+            ON CONFLICT (object_key) DO NOTHING
+            """, keys.stream().map(key -> new Object[]{key}).toList());
+    }
+
+    /**
+     * Забирает готовые к удалению записи и блокирует их до конца транзакции.
+     * SKIP LOCKED: несколько экземпляров приложения разбирают очередь, не мешая друг другу.
+     */
+    public List<PendingDeletion> lockDue(int limit) {
+        return jdbcTemplate.query("""
+            SELECT id, object_key, attempts
+            FROM storage_deletions
+            WHERE next_attempt_at <= now()
+            ORDER BY next_attempt_at, id
+            LIMIT ?
+            FOR UPDATE SKIP LOCKED
+            """, (rs, rowNum) -> new PendingDeletion(rs.getLong("id"), rs.getString("object_key"), rs.getInt("attempts")),
+                limit);
+    }
+
+    public void deleteByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) return;
+        jdbcTemplate.update("DELETE FROM storage_deletions WHERE id = ANY(CAST(? AS bigint[]))", toIdArray(ids));
+    }
+
+    public void markFailed(Long id, Instant nextAttemptAt, String error) {
+        jdbcTemplate.update("""
+            UPDATE storage_deletions
+            SET attempts = attempts + 1, next_attempt_at = ?, last_error = ?
+            WHERE id = ?
+            """, Timestamp.from(nextAttemptAt), error, id);
+    }
+
+    public long countPending() {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM storage_deletions", Long.class);
+        return count != null ? count : 0L;
+    }
+
+    public Set<String> findQueuedKeys() {
+        return new HashSet<>(jdbcTemplate.queryForList("SELECT object_key FROM storage_deletions", String.class));
+    }
+
+    /**
+     * Все URL файлов, на которые ссылается БД: фото товаров, логотипы, аватары
+     */
+    public void forEachReferencedFileUrl(Consumer<String> consumer) {
+        jdbcTemplate.query("""
+            SELECT image_url AS url FROM item_images
+            UNION ALL SELECT logo_url FROM shops WHERE logo_url IS NOT NULL
+            UNION ALL SELECT avatar_url FROM users WHERE avatar_url IS NOT NULL
+            """, (RowCallbackHandler) rs -> consumer.accept(rs.getString("url")));
+    }
+
+    /**
+     * Ключи уменьшенных копий, у которых оригинал ещё на месте
+     */
+    public List<String> findReferencedRenditionKeys() {
+        return jdbcTemplate.queryForList("""
+            SELECT r.object_key FROM image_renditions r
+            WHERE EXISTS (SELECT 1 FROM item_images i WHERE i.image_url = r.original_url)
+               OR EXISTS (SELECT 1 FROM shops s WHERE s.logo_url = r.original_url)
+            """, String.class);
+    }
+
+    public List<String> findCategoryIconUrls() {
+        return jdbcTemplate.queryForList("SELECT icon FROM categories WHERE icon IS NOT NULL", String.class);
+    }
+
+    private static String toIdArray(Collection<Long> ids) {
+        return ids.stream().map(String::valueOf).collect(Collectors.joining(",", "{", "}"));
+    }
+
+    public record PendingDeletion(Long id, String objectKey, int attempts) {
+    }
+}
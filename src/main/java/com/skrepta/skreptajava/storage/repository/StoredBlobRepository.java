@@ -0,0 +1,101 @@
+package com.skrepta.skreptajava.storage.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SQL счётчиков ссылок на файлы (таблица stored_blobs)
+ */
+@Repository
+@RequiredArgsConstructor
+public class StoredBlobRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * +1 ссылка на объект (строка создаётся при первой загрузке).
+     * Одним upsert: две одновременные загрузки одного файла не теряют ссылку.
+     */
+    public BlobRef acquire(String objectKey, String sha256, long sizeBytes) {
+        return jdbcTemplate.queryForObject("""
+            INSERT INTO stored_blobs (object_key, sha256, size_bytes, ref_count, uploaded, created_at)
+            VALUES (?, ?, ?, 1, false, now())
+            ON CONFLICT (object_key) DO UPDATE SET ref_count = stored_blobs.ref_count + 1
+            RETURNING ref_count, uploaded
+            """, (rs, rowNum) -> new BlobRef(rs.getInt("ref_count"), rs.getBoolean("uploaded")),
+                objectKey, sha256, sizeBytes);
+    }
+
+    public void markUploaded(String objectKey) {
+        jdbcTemplate.update("UPDATE stored_blobs SET uploaded = true WHERE object_key = ?", objectKey);
+    }
+
+    /**
+     * -1 ссылка на каждое вхождение ключа (повторы считаются).
+     * @return оставшееся число ссылок по ключу; ключей без строки (старые файлы) в ответе нет
+     */
+    public Map<String, Integer> release(Collection<String> objectKeys) {
+        Map<String, Integer> decrements = new LinkedHashMap<>();
+        objectKeys.forEach(key -> decrements.merge(key, 1, Integer::sum));
+        if (decrements.isEmpty()) return Map.of();
+
+        Map<String, Integer> remaining = new HashMap<>();
+        jdbcTemplate.query("""
+            UPDATE stored_blobs b
+            SET ref_count = GREATEST(b.ref_count - d.n, 0)
+            FROM unnest(?, ?) AS d(object_key, n)
+            WHERE b.object_key = d.object_key
+            RETURNING b.object_key, b.ref_count
+            """, (RowCallbackHandler) rs -> remaining.put(rs.getString("object_key"), rs.getInt("ref_count")),
+                decrements.keySet().toArray(String[]::new),
+                decrements.values().toArray(Integer[]::new));
+        return remaining;
+    }
+
+    /**
+     * Блокирует строки ключей до конца транзакции и возвращает те, на которые снова появились ссылки.
+     * Загрузка того же файла в это время ждёт на строке и после удаления загрузит объект заново.
+     */
+    public Collection<String> lockReferenced(Collection<String> objectKeys) {
+        if (objectKeys.isEmpty()) return List.of();
+        Map<String, Integer> counts = new HashMap<>();
+        jdbcTemplate.query("""
+            SELECT object_key, ref_count FROM stored_blobs
+            WHERE object_key = ANY(?)
+            FOR UPDATE
+            """, (RowCallbackHandler) rs -> counts.put(rs.getString("object_key"), rs.getInt("ref_count")),
+                (Object) objectKeys.toArray(String[]::new));
+        counts.values().removeIf(count -> count == 0);
+        return counts.keySet();
+    }
+
+    public void deleteUnreferenced(Collection<String> objectKeys) {
+        if (objectKeys.isEmpty()) return;
+        jdbcTemplate.update("DELETE FROM stored_blobs WHERE object_key = ANY(?) AND ref_count = 0",
+                (Object) objectKeys.toArray(String[]::new));
+    }
+
+    /**
+     * Объекты, ссылки и байты: сколько хранится и сколько хранилось бы без дедупликации
+     */
+    public Map<String, Object> getStats() {
+        return jdbcTemplate.queryForMap("""
+            SELECT COUNT(*) AS blobs,
+                   COALESCE(SUM(ref_count), 0) AS refs,
+                   COALESCE(SUM(size_bytes), 0) AS stored_bytes,
+                   COALESCE(SUM(size_bytes * ref_count), 0) AS referenced_bytes
+            FROM stored_blobs
+            """);
+    }
+
+    public record BlobRef(int refCount, boolean uploaded) {
+    }
+}
@@ -0,0 +1,25 @@
+package com.skrepta.skreptajava.storage.repository;
+
+import com.skrepta.skreptajava.storage.entity.UploadSlot;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface UploadSlotRepository extends JpaRepository<UploadSlot, Long> {
+
+    // Блокировка: два одновременных подтверждения одного слота не привяжут файл дважды
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM UploadSlot s WHERE s.id IN :ids")
+    List<UploadSlot> findAllForUpdate(@Param("ids") Collection<Long> ids);
+
+    List<UploadSlot> findByExpiresAtBefore(Instant now, Pageable pageable);
+}
@@ -0,0 +1,142 @@
+package com.skrepta.skreptajava.storage.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Хранилище в локальном каталоге - для разработки и тестов без S3.
+ * Ключ объекта - относительный путь внутри storage.filesystem.root,
+ * тип содержимого определяется по расширению.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "storage.backend", havingValue = "filesystem")
+public class FileSystemObjectStorage implements ObjectStorage {
+
+    @Value("${storage.filesystem.root:./storage-data}")
+    private Path root;
+
+    @Value("${storage.filesystem.base-url:http://localhost:8080/files/}")
+    private String baseUrl;
+
+    @PostConstruct
+    private void init() throws IOException {
+        root = root.toAbsolutePath().normalize();
+        Files.createDirectories(root);
+        log.info("Using filesystem object storage at {}", root);
+    }
+
+    @Override
+    public void put(String key, InputStream content, long length, String contentType, String cacheControl) throws IOException {
+        Path target = resolve(key);
+        Files.createDirectories(target.getParent());
+        // Через временный файл: читатель не увидит наполовину записанный объект
+        Path temp = Files.createTempFile(target.getParent(), ".upload-", ".tmp");
+        try {
+            Files.copy(content, temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        return Files.newInputStream(resolve(key));
+    }
+
+    @Override
+    public Optional<ObjectInfo> head(String key) {
+        Path path = resolve(key);
+        if (!Files.isRegularFile(path)) {
+            return Optional.empty();
+        }
+        return Optional.of(info(path));
+    }
+
+    @Override
+    public Map<String, String> delete(Collection<String> keys) {
+        Map<String, String> failed = new HashMap<>();
+        for (String key : keys) {
+            try {
+                Files.deleteIfExists(resolve(key));
+            } catch (IOException | RuntimeException e) {
+                failed.put(key, e.getMessage());
+            }
+        }
+        return failed;
+    }
+
+    @Override
+    public void list(Consumer<ObjectInfo> consumer) {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.filter(Files::isRegularFile)
+                    .filter(path -> !path.getFileName().toString().startsWith(".upload-"))
+                    .forEach(path -> consumer.accept(info(path)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public String url(String key) {
+        return baseUrl + key;
+    }
+
+    @Override
+    public boolean supportsPresignedPut() {
+        return false;
+    }
+
+    @Override
+    public String presignPut(String key, String contentType, Instant expiresAt) {
+        throw new UnsupportedOperationException("Direct uploads are not supported by filesystem storage");
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("backend", "filesystem");
+        stats.put("root", root.toString());
+        return stats;
+    }
+
+    private ObjectInfo info(Path path) {
+        try {
+            String key = root.relativize(path).toString().replace(path.getFileSystem().getSeparator(), "/");
+            return new ObjectInfo(key, Files.size(path), Files.probeContentType(path),
+                    Files.getLastModifiedTime(path).toInstant());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Путь объекта; ключ не может выйти за пределы корня
+     */
+    private Path resolve(String key) {
+        Path path = root.resolve(key).normalize();
+        if (!path.startsWith(root)) {
+            throw new IllegalArgumentException("Invalid object key: " + key);
+        }
+        return path;
+    }
+}
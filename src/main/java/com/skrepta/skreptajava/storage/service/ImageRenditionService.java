@@ -0,0 +1,455 @@
+package com.skrepta.skreptajava.storage.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.skrepta.skreptajava.config.FileStorageService;
+import com.skrepta.skreptajava.storage.dto.ImageVariants;
+import com.skrepta.skreptajava.storage.entity.ImageRendition;
+import com.skrepta.skreptajava.storage.event.ImageRenditionsReadyEvent;
+import com.skrepta.skreptajava.storage.entity.ImageRendition.Variant;
+import com.skrepta.skreptajava.storage.repository.ImageRenditionRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Фоновая обработка загруженных картинок: уменьшенные JPEG-копии
+ * (миниатюра и средний размер) без метаданных EXIF.
+ * Обработка идёт на отдельном пуле с ограниченным числом потоков и очередью,
+ * чтобы декодирование больших фото не отнимало CPU у запросов. Что не влезло
+ * в очередь или было пропущено при рестарте, подбирает периодический досчёт.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ImageRenditionService {
+
+    static final String RENDITIONS_FOLDER = "renditions/";
+    private static final int BACKFILL_BATCH_SIZE = 100;
+
+    private final ImageRenditionRepository imageRenditionRepository;
+    private final ObjectStorage objectStorage;
+    private final StorageDeletionService storageDeletionService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${images.pipeline.threads:2}")
+    private int threads;
+
+    @Value("${images.pipeline.queue-size:500}")
+    private int queueSize;
+
+    @Value("${images.pipeline.jpeg-quality:0.82}")
+    private float jpegQuality;
+
+    private ThreadPoolExecutor executor;
+
+    // Оригиналы, которые сейчас в очереди или в обработке
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    // Форматы, которые ImageIO не читает (svg, webp, heic): не пытаемся снова каждую минуту
+    private final Cache<String, Boolean> unsupported = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(Duration.ofDays(1))
+            .build();
+    // Готовые ссылки по оригиналу; короткий TTL подхватывает копии, сделанные другим экземпляром
+    private final Cache<String, ImageVariants> variantsCache = Caffeine.newBuilder()
+            .maximumSize(50_000)
+            .expireAfterWrite(Duration.ofMinutes(5))
+            .build();
+
+    private final Map<Stage, StageTimer> timers = new EnumMap<>(Stage.class);
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    @PostConstruct
+    private void init() {
+        for (Stage stage : Stage.values()) {
+            timers.put(stage, new StageTimer());
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), r -> {
+                    Thread thread = new Thread(r, "image-pipeline-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // ============================================
+    // Постановка в обработку
+    // ============================================
+
+    /**
+     * Ставит оригиналы в обработку после коммита текущей транзакции
+     * (без транзакции - сразу). Никогда не блокирует вызывающий поток.
+     */
+    public void submitAfterCommit(Collection<String> originalUrls) {
+        List<String> urls = originalUrls == null ? List.of() : originalUrls.stream()
+                .filter(url -> url != null && !url.isBlank())
+                .distinct()
+                .toList();
+        if (urls.isEmpty()) return;
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    urls.forEach(ImageRenditionService.this::submit);
+                }
+            });
+        } else {
+            urls.forEach(this::submit);
+        }
+    }
+
+    private void submit(String originalUrl) {
+        if (unsupported.getIfPresent(originalUrl) != null || !inFlight.add(originalUrl)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    process(originalUrl);
+                } finally {
+                    inFlight.remove(originalUrl);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Очередь полна - оригинал подберёт досчёт
+            inFlight.remove(originalUrl);
+            rejected.increment();
+        }
+    }
+
+    /**
+     * Досчёт копий для оригиналов без них: старые данные, переполнение очереди, рестарт
+     */
+    @Scheduled(initialDelayString = "${images.pipeline.backfill-ms:60000}", fixedDelayString = "${images.pipeline.backfill-ms:60000}")
+    public void backfill() {
+        try {
+            int capacity = executor.getQueue().remainingCapacity();
+            if (capacity == 0) return;
+
+            List<String> urls = imageRenditionRepository.findOriginalsWithoutRenditions(
+                    Math.min(capacity, BACKFILL_BATCH_SIZE + unsupportedCount()));
+            urls.forEach(this::submit);
+        } catch (Exception e) {
+            log.error("Image rendition backfill failed: {}", e.getMessage());
+        }
+    }
+
+    private int unsupportedCount() {
+        return (int) Math.min(unsupported.estimatedSize(), 1_000);
+    }
+
+    // ============================================
+    // Конвейер: скачать - декодировать - уменьшить - закодировать - загрузить
+    // ============================================
+
+    private void process(String originalUrl) {
+        long startTime = System.nanoTime();
+        try {
+            // Тот же файл уже загружали (ключ по содержимому) - копии готовы
+            if (imageRenditionRepository.existsByOriginalUrl(originalUrl)) {
+                return;
+            }
+            byte[] original = timed(Stage.DOWNLOAD, () -> download(FileStorageService.keyOf(originalUrl)));
+
+            BufferedImage decoded = timed(Stage.DECODE, () -> decode(original, Variant.MEDIUM.getMaxSide()));
+            if (decoded == null) {
+                unsupported.put(originalUrl, Boolean.TRUE);
+                log.debug("Unsupported image format, renditions skipped: {}", originalUrl);
+                return;
+            }
+
+            // Миниатюра считается из среднего размера - так дешевле, чем из оригинала
+            BufferedImage medium = timed(Stage.RESIZE, () -> resize(decoded, Variant.MEDIUM.getMaxSide()));
+            BufferedImage thumbnail = timed(Stage.RESIZE, () -> resize(medium, Variant.THUMBNAIL.getMaxSide()));
+
+            store(originalUrl, Variant.MEDIUM, medium);
+            store(originalUrl, Variant.THUMBNAIL, thumbnail);
+
+            variantsCache.invalidate(originalUrl);
+            eventPublisher.publishEvent(new ImageRenditionsReadyEvent(originalUrl));
+            processed.increment();
+            log.debug("Renditions for {} ready in {}ms", originalUrl, (System.nanoTime() - startTime) / 1_000_000);
+        } catch (Exception e) {
+            failed.increment();
+            log.warn("Failed to build renditions for {}: {}", originalUrl, e.getMessage());
+        }
+    }
+
+    private void store(String originalUrl, Variant variant, BufferedImage image) {
+        byte[] jpeg = timed(Stage.ENCODE, () -> encodeJpeg(image));
+        String key = renditionKey(originalUrl, variant);
+
+        String url = timed(Stage.UPLOAD, () -> {
+            try {
+                // Ключ уникален для оригинала, содержимое по нему не меняется
+                objectStorage.put(key, new ByteArrayInputStream(jpeg), jpeg.length, "image/jpeg",
+                        "public, max-age=31536000, immutable");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return objectStorage.url(key);
+        });
+
+        imageRenditionRepository.insertIgnore(originalUrl, variant.name(), key, url,
+                image.getWidth(), image.getHeight(), jpeg.length);
+    }
+
+    private byte[] download(String key) {
+        try (InputStream in = objectStorage.open(key)) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to download " + key, e);
+        }
+    }
+
+    /**
+     * Декодирует картинку, по возможности сразу с прореживанием: для копии
+     * в 1024px не нужно разворачивать в память все 24 мегапикселя оригинала.
+     * Метаданные (EXIF, GPS) не читаются и в копии не попадают.
+     * @return null, если формат не поддерживается
+     */
+    static BufferedImage decode(byte[] bytes, int targetMaxSide) {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(bytes))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int largestSide = Math.max(reader.getWidth(0), reader.getHeight(0));
+                // Оставляем запас x2 к целевому размеру, чтобы уменьшение было качественным
+                int subsampling = Math.max(1, largestSide / (targetMaxSide * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to decode image", e);
+        }
+    }
+
+    /**
+     * Уменьшение с пошаговым делением пополам (билинейная интерполяция на каждом шаге
+     * даёт почти качество бикубической при меньшей цене). Прозрачность заливается белым.
+     */
+    static BufferedImage resize(BufferedImage source, int maxSide) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        double scale = Math.min(1.0, (double) maxSide / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+
+        BufferedImage current = source;
+        while (current.getWidth() / 2 >= targetWidth && current.getHeight() / 2 >= targetHeight) {
+            current = draw(current, current.getWidth() / 2, current.getHeight() / 2);
+        }
+        return draw(current, targetWidth, targetHeight);
+    }
+
+    private static BufferedImage draw(BufferedImage source, int width, int height) {
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, width, height);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to encode JPEG", e);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private static String renditionKey(String originalUrl, Variant variant) {
+        String name = FileStorageService.keyOf(originalUrl);
+        int dot = name.lastIndexOf('.');
+        String baseName = dot > 0 ? name.substring(0, dot) : name;
+        return RENDITIONS_FOLDER + variant.name().toLowerCase() + "/" + baseName + ".jpg";
+    }
+
+    // ============================================
+    // Ссылки для ответов API
+    // ============================================
+
+    /**
+     * Варианты для списка оригиналов в исходном порядке (один запрос на промахи кэша)
+     */
+    public List<ImageVariants> variantsList(List<String> originalUrls) {
+        if (originalUrls == null || originalUrls.isEmpty()) {
+            return List.of();
+        }
+        Map<String, ImageVariants> variants = variantsFor(originalUrls);
+        return originalUrls.stream().map(variants::get).toList();
+    }
+
+    public ImageVariants variantsOf(String originalUrl) {
+        if (originalUrl == null) return null;
+        return variantsFor(List.of(originalUrl)).get(originalUrl);
+    }
+
+    public Map<String, ImageVariants> variantsFor(Collection<String> originalUrls) {
+        return variantsCache.getAll(originalUrls, this::loadVariants);
+    }
+
+    private Map<String, ImageVariants> loadVariants(Set<? extends String> originalUrls) {
+        Map<String, Map<Variant, String>> found = new HashMap<>();
+        for (ImageRendition rendition : imageRenditionRepository.findByOriginalUrlIn(List.copyOf(originalUrls))) {
+            found.computeIfAbsent(rendition.getOriginalUrl(), url -> new EnumMap<>(Variant.class))
+                    .put(rendition.getVariant(), rendition.getUrl());
+        }
+
+        Map<String, ImageVariants> result = new HashMap<>();
+        for (String url : originalUrls) {
+            Map<Variant, String> renditions = found.getOrDefault(url, Map.of());
+            result.put(url, ImageVariants.builder()
+                    .original(url)
+                    .thumbnail(renditions.getOrDefault(Variant.THUMBNAIL, url))
+                    .medium(renditions.getOrDefault(Variant.MEDIUM, url))
+                    .build());
+        }
+        return result;
+    }
+
+    /**
+     * Удаление копий вместе с оригиналами: объекты - в очередь удаления, строки - сразу
+     */
+    public void deleteFor(Collection<String> originalUrls) {
+        if (originalUrls == null || originalUrls.isEmpty()) return;
+
+        List<ImageRendition> renditions = imageRenditionRepository.findByOriginalUrlIn(originalUrls);
+        if (!renditions.isEmpty()) {
+            storageDeletionService.enqueue(renditions.stream().map(ImageRendition::getObjectKey).toList());
+            imageRenditionRepository.deleteAllInBatch(renditions);
+        }
+        variantsCache.invalidateAll(originalUrls);
+    }
+
+    // ============================================
+    // Статистика
+    // ============================================
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stages = new LinkedHashMap<>();
+        timers.forEach((stage, timer) -> stages.put(stage.name().toLowerCase(), timer.snapshot()));
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("threads", threads);
+        stats.put("active", executor.getActiveCount());
+        stats.put("queued", executor.getQueue().size());
+        stats.put("processed", processed.sum());
+        stats.put("failed", failed.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("unsupported", unsupported.estimatedSize());
+        stats.put("stages", stages);
+        return stats;
+    }
+
+    private <T> T timed(Stage stage, Supplier<T> action) {
+        long start = System.nanoTime();
+        try {
+            return action.get();
+        } finally {
+            timers.get(stage).record(System.nanoTime() - start);
+        }
+    }
+
+    private enum Stage {
+        DOWNLOAD, DECODE, RESIZE, ENCODE, UPLOAD
+    }
+
+    private static final class StageTimer {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        Map<String, Object> snapshot() {
+            long n = count.sum();
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("count", n);
+            result.put("avg_ms", n == 0 ? 0.0 : totalNanos.sum() / 1_000_000.0 / n);
+            result.put("max_ms", maxNanos.get() / 1_000_000.0);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.skrepta.skreptajava.storage.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Хранилище объектов приложения. Рабочая реализация - S3 (S3ObjectStorage),
+ * для локального запуска и тестов - каталог на диске (FileSystemObjectStorage),
+ * выбор через storage.backend. Все объекты публично читаемы по url(key).
+ */
+public interface ObjectStorage {
+
+    /**
+     * Записывает объект; существующий с тем же ключом перезаписывается
+     */
+    void put(String key, InputStream content, long length, String contentType, String cacheControl) throws IOException;
+
+    InputStream open(String key) throws IOException;
+
+    /**
+     * Размер и тип объекта без чтения содержимого; пусто, если объекта нет
+     */
+    Optional<ObjectInfo> head(String key);
+
+    /**
+     * Удаляет объекты (отсутствующие считаются удалёнными)
+     * @return ключи, которые не удалось удалить, с текстом ошибки
+     */
+    Map<String, String> delete(Collection<String> keys);
+
+    /**
+     * Обходит все объекты хранилища
+     */
+    void list(Consumer<ObjectInfo> consumer);
+
+    String url(String key);
+
+    /**
+     * Умеет ли хранилище выдавать подписанные URL для прямой загрузки (presignPut)
+     */
+    boolean supportsPresignedPut();
+
+    /**
+     * Подписанный URL для прямой загрузки клиентом (PUT с указанным Content-Type)
+     * @throws UnsupportedOperationException если хранилище так не умеет (см. supportsPresignedPut)
+     */
+    String presignPut(String key, String contentType, Instant expiresAt);
+
+    Map<String, Object> getStats();
+
+    record ObjectInfo(String key, long size, String contentType, Instant lastModified) {
+    }
+}
@@ -0,0 +1,175 @@
+package com.skrepta.skreptajava.storage.service;
+
+import com.amazonaws.HttpMethod;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.CannedAccessControlList;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.GeneratePresignedUrlRequest;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.amazonaws.services.s3.transfer.TransferManager;
+import com.amazonaws.services.s3.transfer.TransferManagerBuilder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Хранилище в бакете S3 через общий клиент (см. S3Config)
+ */
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "storage.backend", havingValue = "s3", matchIfMissing = true)
+public class S3ObjectStorage implements ObjectStorage {
+
+    // Лимит S3 на один запрос DeleteObjects
+    private static final int DELETE_BATCH_SIZE = 1000;
+
+    private final AmazonS3 s3client;
+    private final S3RequestMetrics s3RequestMetrics;
+
+    @Value("${ps.bucket-name}")
+    private String bucketName;
+
+    // Файлы больше порога грузятся multipart-частями параллельно
+    @Value("${storage.upload.multipart-threshold:5MB}")
+    private DataSize multipartThreshold;
+
+    private TransferManager transferManager;
+
+    @PostConstruct
+    private void init() {
+        this.transferManager = TransferManagerBuilder.standard()
+                .withS3Client(s3client)
+                .withMultipartUploadThreshold(multipartThreshold.toBytes())
+                .withMinimumUploadPartSize(multipartThreshold.toBytes())
+                .build();
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        // Клиент общий - его закрывает Spring, здесь только пул TransferManager
+        transferManager.shutdownNow(false);
+    }
+
+    @Override
+    public void put(String key, InputStream content, long length, String contentType, String cacheControl) throws IOException {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(length);
+        metadata.setContentType(contentType);
+        if (cacheControl != null) {
+            metadata.setCacheControl(cacheControl);
+        }
+        PutObjectRequest request = new PutObjectRequest(bucketName, key, content, metadata)
+                .withCannedAcl(CannedAccessControlList.PublicRead);
+
+        try {
+            // Маленькие файлы - одним PUT, большие - частями
+            transferManager.upload(request).waitForCompletion();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Upload interrupted: " + key, e);
+        }
+    }
+
+    @Override
+    public InputStream open(String key) {
+        return s3client.getObject(bucketName, key).getObjectContent();
+    }
+
+    @Override
+    public Optional<ObjectInfo> head(String key) {
+        try {
+            ObjectMetadata metadata = s3client.getObjectMetadata(bucketName, key);
+            Date lastModified = metadata.getLastModified();
+            return Optional.of(new ObjectInfo(key, metadata.getContentLength(), metadata.getContentType(),
+                    lastModified != null ? lastModified.toInstant() : null));
+        } catch (AmazonS3Exception e) {
+            if (e.getStatusCode() == 404) {
+                return Optional.empty();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public Map<String, String> delete(Collection<String> keys) {
+        Map<String, String> failed = new HashMap<>();
+        List<String> all = List.copyOf(keys);
+        for (int from = 0; from < all.size(); from += DELETE_BATCH_SIZE) {
+            List<String> batch = all.subList(from, Math.min(from + DELETE_BATCH_SIZE, all.size()));
+            try {
+                s3client.deleteObjects(new DeleteObjectsRequest(bucketName)
+                        .withKeys(batch.toArray(String[]::new))
+                        .withQuiet(true));
+            } catch (MultiObjectDeleteException e) {
+                e.getErrors().forEach(error -> failed.put(error.getKey(), error.getCode() + ": " + error.getMessage()));
+            } catch (Exception e) {
+                batch.forEach(key -> failed.put(key, e.getMessage()));
+            }
+        }
+        return failed;
+    }
+
+    @Override
+    public void list(Consumer<ObjectInfo> consumer) {
+        ListObjectsV2Request request = new ListObjectsV2Request().withBucketName(bucketName);
+        ListObjectsV2Result result;
+        do {
+            result = s3client.listObjectsV2(request);
+            for (S3ObjectSummary object : result.getObjectSummaries()) {
+                consumer.accept(new ObjectInfo(object.getKey(), object.getSize(), null,
+                        object.getLastModified().toInstant()));
+            }
+            request.setContinuationToken(result.getNextContinuationToken());
+        } while (result.isTruncated());
+    }
+
+    @Override
+    public String url(String key) {
+        return s3client.getUrl(bucketName, key).toString();
+    }
+
+    @Override
+    public boolean supportsPresignedPut() {
+        return true;
+    }
+
+    @Override
+    public String presignPut(String key, String contentType, Instant expiresAt) {
+        GeneratePresignedUrlRequest request = new GeneratePresignedUrlRequest(bucketName, key, HttpMethod.PUT)
+                .withExpiration(Date.from(expiresAt))
+                .withContentType(contentType);
+        request.addRequestParameter("x-amz-acl", "public-read");
+        return s3client.generatePresignedUrl(request).toString();
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("backend", "s3");
+        stats.put("bucket", bucketName);
+        stats.putAll(s3RequestMetrics.getStats());
+        return stats;
+    }
+}
@@ -0,0 +1,152 @@
+package com.skrepta.skreptajava.storage.service;
+
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.metrics.RequestMetricCollector;
+import com.amazonaws.util.AWSRequestMetrics.Field;
+import com.amazonaws.util.TimingInfo;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Метрики клиента S3: гистограмма задержек по операциям (PutObject, GetObject, ...)
+ * и загрузка пула соединений. SDK вызывает collectMetrics после каждого запроса,
+ * включая повторы внутри него.
+ */
+public class S3RequestMetrics extends RequestMetricCollector {
+
+    // Верхние границы корзин гистограммы, мс; последняя корзина - всё, что дольше
+    private static final long[] BUCKETS_MS = {5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000};
+
+    private final int maxConnections;
+    private final Map<String, OperationStats> operations = new ConcurrentHashMap<>();
+    private final AtomicLong leased = new AtomicLong();
+    private final AtomicLong maxLeased = new AtomicLong();
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong maxPending = new AtomicLong();
+
+    public S3RequestMetrics(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    @Override
+    public void collectMetrics(Request<?> request, Response<?> response) {
+        TimingInfo timing = request.getAWSRequestMetrics().getTimingInfo();
+        Double millis = timing.getTimeTakenMillisIfKnown();
+        String operation = operationName(request);
+
+        OperationStats stats = operations.computeIfAbsent(operation, name -> new OperationStats());
+        if (millis != null) {
+            stats.record(millis.longValue(), response == null);
+        }
+        Number retries = timing.getCounter(Field.HttpClientRetryCount.name());
+        if (retries != null) {
+            stats.retries.add(retries.longValue());
+        }
+
+        Number leasedNow = timing.getCounter(Field.HttpClientPoolLeasedCount.name());
+        if (leasedNow != null) {
+            leased.set(leasedNow.longValue());
+            maxLeased.accumulateAndGet(leasedNow.longValue(), Math::max);
+        }
+        Number pendingNow = timing.getCounter(Field.HttpClientPoolPendingCount.name());
+        if (pendingNow != null) {
+            pending.set(pendingNow.longValue());
+            maxPending.accumulateAndGet(pendingNow.longValue(), Math::max);
+        }
+    }
+
+    private static String operationName(Request<?> request) {
+        String name = request.getOriginalRequest().getClass().getSimpleName();
+        return name.endsWith("Request") ? name.substring(0, name.length() - "Request".length()) : name;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> pool = new LinkedHashMap<>();
+        pool.put("max_connections", maxConnections);
+        pool.put("leased", leased.get());
+        pool.put("max_leased", maxLeased.get());
+        pool.put("pending", pending.get());
+        pool.put("max_pending", maxPending.get());
+        pool.put("utilisation", maxConnections == 0 ? 0.0 : (double) leased.get() / maxConnections);
+
+        Map<String, Object> latency = new LinkedHashMap<>();
+        operations.forEach((operation, stats) -> latency.put(operation, stats.snapshot()));
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("pool", pool);
+        result.put("operations", latency);
+        return result;
+    }
+
+    private static final class OperationStats {
+        private final LongAdder[] buckets = new LongAdder[BUCKETS_MS.length + 1];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder totalMillis = new LongAdder();
+        private final AtomicLong maxMillis = new AtomicLong();
+
+        OperationStats() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long millis, boolean error) {
+            int bucket = 0;
+            while (bucket < BUCKETS_MS.length && millis > BUCKETS_MS[bucket]) {
+                bucket++;
+            }
+            buckets[bucket].increment();
+            count.increment();
+            totalMillis.add(millis);
+            maxMillis.accumulateAndGet(millis, Math::max);
+            if (error) {
+                errors.increment();
+            }
+        }
+
+        Map<String, Object> snapshot() {
+            long[] counts = new long[buckets.length];
+            Map<String, Long> histogram = new LinkedHashMap<>();
+            for (int i = 0; i < buckets.length; i++) {
+                counts[i] = buckets[i].sum();
+                histogram.put(i < BUCKETS_MS.length ? "le_" + BUCKETS_MS[i] : "gt_" + BUCKETS_MS[BUCKETS_MS.length - 1], counts[i]);
+            }
+
+            long n = count.sum();
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("count", n);
+            result.put("errors", errors.sum());
+            result.put("retries", retries.sum());
+            result.put("avg_ms", n == 0 ? 0.0 : (double) totalMillis.sum() / n);
+            result.put("max_ms", maxMillis.get());
+            result.put("p50_ms", percentile(counts, n, 0.50));
+            result.put("p95_ms", percentile(counts, n, 0.95));
+            result.put("p99_ms", percentile(counts, n, 0.99));
+            result.put("histogram", histogram);
+            return result;
+        }
+
+        /**
+         * Оценка перцентиля сверху: граница корзины, в которую он попал
+         */
+        private long percentile(long[] counts, long total, double quantile) {
+            if (total == 0) return 0;
+            long rank = (long) Math.ceil(total * quantile);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return i < BUCKETS_MS.length ? BUCKETS_MS[i] : maxMillis.get();
+                }
+            }
+            return maxMillis.get();
+        }
+    }
+}
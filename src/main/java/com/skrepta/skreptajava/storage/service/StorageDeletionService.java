@@ -0,0 +1,181 @@
+package com.skrepta.skreptajava.storage.service;
+
+import com.skrepta.skreptajava.category.service.CategoryIconService;
+import com.skrepta.skreptajava.config.FileStorageService;
+import com.skrepta.skreptajava.storage.repository.StorageDeletionRepository;
+import com.skrepta.skreptajava.storage.repository.StorageDeletionRepository.PendingDeletion;
+import com.skrepta.skreptajava.storage.repository.StoredBlobRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Сборщик мусора в S3.
+ * Вместо синхронного deleteObject в запросе ключи ставятся в таблицу-очередь
+ * (в той же транзакции, что и изменение данных), а фоновый обработчик удаляет
+ * их пачками по 1000 ключей с повторами при ошибках.
+ * Периодическая сверка бакета с БД ставит в очередь файлы, на которые никто не ссылается.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StorageDeletionService {
+
+    // Совпадает с лимитом S3 на один запрос DeleteObjects
+    static final int BATCH_SIZE = 1000;
+    private static final Duration BASE_BACKOFF = Duration.ofSeconds(30);
+    private static final Duration MAX_BACKOFF = Duration.ofHours(6);
+
+    private final StorageDeletionRepository storageDeletionRepository;
+    private final StoredBlobRepository storedBlobRepository;
+    private final ObjectStorage objectStorage;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${storage.gc.orphan-sweep.enabled:true}")
+    private boolean orphanSweepEnabled;
+
+    @Value("${storage.gc.orphan-grace-hours:24}")
+    private long orphanGraceHours;
+
+    /**
+     * Ставит объекты в очередь на удаление. Вызывается внутри транзакции
+     * изменения: при её откате объекты не будут удалены.
+     */
+    public void enqueue(Collection<String> objectKeys) {
+        List<String> keys = objectKeys.stream()
+                .filter(key -> key != null && !key.isBlank())
+                .distinct()
+                .toList();
+        storageDeletionRepository.enqueue(keys);
+    }
+
+    public long getPendingCount() {
+        return storageDeletionRepository.countPending();
+    }
+
+    // ============================================
+    // Обработчик очереди
+    // ============================================
+
+    @Scheduled(initialDelayString = "${storage.gc.drain-ms:10000}", fixedDelayString = "${storage.gc.drain-ms:10000}")
+    public void drain() {
+        try {
+            int processed;
+            do {
+                Integer count = transactionTemplate.execute(status -> drainBatch());
+                processed = count != null ? count : 0;
+            } while (processed == BATCH_SIZE);
+        } catch (Exception e) {
+            log.error("Failed to drain storage deletion queue: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Одна пачка: записи заблокированы до конца транзакции, удалённые из S3
+     * убираются из очереди, неудачные откладываются с экспоненциальной паузой
+     */
+    private int drainBatch() {
+        List<PendingDeletion> batch = storageDeletionRepository.lockDue(BATCH_SIZE);
+        if (batch.isEmpty()) return 0;
+
+        // Файл успели загрузить заново, пока он ждал в очереди - не удаляем
+        Collection<String> referenced = storedBlobRepository.lockReferenced(
+                batch.stream().map(PendingDeletion::objectKey).toList());
+        List<String> keys = batch.stream()
+                .map(PendingDeletion::objectKey)
+                .filter(key -> !referenced.contains(key))
+                .toList();
+        Map<String, String> failed = keys.isEmpty() ? Map.of() : objectStorage.delete(keys);
+
+        List<Long> done = new ArrayList<>(batch.size());
+        List<String> deletedKeys = new ArrayList<>(batch.size());
+        Instant now = Instant.now();
+        for (PendingDeletion deletion : batch) {
+            String error = failed.get(deletion.objectKey());
+            if (error == null) {
+                done.add(deletion.id());
+                deletedKeys.add(deletion.objectKey());
+            } else {
+                storageDeletionRepository.markFailed(deletion.id(), now.plus(backoff(deletion.attempts())), error);
+            }
+        }
+        storageDeletionRepository.deleteByIds(done);
+        storedBlobRepository.deleteUnreferenced(deletedKeys);
+
+        if (failed.isEmpty()) {
+            log.info("Deleted {} objects from S3", done.size());
+        } else {
+            log.warn("Deleted {} objects from S3, {} failed and will be retried", done.size(), failed.size());
+        }
+        return batch.size();
+    }
+
+    private static Duration backoff(int attempts) {
+        Duration delay = BASE_BACKOFF.multipliedBy(1L << Math.min(attempts, 20));
+        return delay.compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : delay;
+    }
+
+    // ============================================
+    // Сверка бакета с БД
+    // ============================================
+
+    /**
+     * Ставит в очередь объекты бакета, на которые не ссылается ни одна запись.
+     * Свежие объекты не трогаем: файл загружается в S3 раньше, чем коммитится ссылка на него.
+     */
+    @Scheduled(initialDelayString = "${storage.gc.sweep-ms:86400000}", fixedDelayString = "${storage.gc.sweep-ms:86400000}")
+    public void sweepOrphans() {
+        if (!orphanSweepEnabled) return;
+
+        try {
+            long startTime = System.currentTimeMillis();
+            // Ссылки читаем до листинга: всё, что появится позже, моложе порога
+            Set<String> referenced = new HashSet<>();
+            storageDeletionRepository.forEachReferencedFileUrl(url -> referenced.add(FileStorageService.keyOf(url)));
+            storageDeletionRepository.findCategoryIconUrls().forEach(url -> referenced.add(CategoryIconService.iconKey(url)));
+            referenced.addAll(storageDeletionRepository.findReferencedRenditionKeys());
+            Set<String> queued = storageDeletionRepository.findQueuedKeys();
+
+            Instant cutoff = Instant.now().minus(Duration.ofHours(orphanGraceHours));
+            List<String> orphans = new ArrayList<>();
+
+            objectStorage.list(object -> {
+                String key = object.key();
+                if (isManagedKey(key)
+                        && object.lastModified().isBefore(cutoff)
+                        && !referenced.contains(key)
+                        && !queued.contains(key)) {
+                    orphans.add(key);
+                }
+            });
+
+            enqueue(orphans);
+            log.info("Orphan sweep in {}ms: {} referenced, {} orphans queued",
+                    System.currentTimeMillis() - startTime, referenced.size(), orphans.size());
+        } catch (Exception e) {
+            log.error("Orphan sweep failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Только ключи, которые создаёт само приложение: файлы в корне бакета,
+     * иконки категорий и уменьшенные копии картинок. Всё остальное в бакете сверка не трогает.
+     */
+    private static boolean isManagedKey(String key) {
+        return !key.contains("/")
+                || key.startsWith(CategoryIconService.ICONS_FOLDER)
+                || key.startsWith(ImageRenditionService.RENDITIONS_FOLDER);
+    }
+}
@@ -0,0 +1,212 @@
+package com.skrepta.skreptajava.storage.service;
+
+import com.skrepta.skreptajava.auth.entity.User;
+import com.skrepta.skreptajava.auth.exception.DirectUploadNotSupportedException;
+import com.skrepta.skreptajava.auth.exception.InvalidUploadException;
+import com.skrepta.skreptajava.auth.exception.ResourceNotFoundException;
+import com.skrepta.skreptajava.auth.repository.UserRepository;
+import com.skrepta.skreptajava.item.service.ItemService;
+import com.skrepta.skreptajava.shop.service.ShopService;
+import com.skrepta.skreptajava.storage.dto.UploadConfirmRequest;
+import com.skrepta.skreptajava.storage.dto.UploadConfirmResponse;
+import com.skrepta.skreptajava.storage.dto.UploadSlotRequest;
+import com.skrepta.skreptajava.storage.dto.UploadSlotResponse;
+import com.skrepta.skreptajava.storage.entity.UploadSlot;
+import com.skrepta.skreptajava.storage.repository.UploadSlotRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Прямая загрузка файлов в бакет по подписанному URL.
+ * 1. Клиент запрашивает слот - получает подписанный PUT (тип файла входит в подпись).
+ * 2. Клиент грузит файл прямо в S3, байты не идут через приложение.
+ * 3. Клиент подтверждает слоты - сервер делает HEAD, сверяет размер и тип
+ *    и только потом привязывает URL к товару или магазину.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UploadService {
+
+    private static final Map<String, String> ALLOWED_TYPES = Map.of(
+            "image/jpeg", ".jpg",
+            "image/png", ".png",
+            "image/webp", ".webp",
+            "image/gif", ".gif"
+    );
+    private static final int EXPIRE_BATCH_SIZE = 500;
+
+    private final UploadSlotRepository uploadSlotRepository;
+    private final UserRepository userRepository;
+    private final ItemService itemService;
+    private final ShopService shopService;
+    private final StorageDeletionService storageDeletionService;
+    private final ObjectStorage objectStorage;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${storage.presigned.max-size:10MB}")
+    private DataSize maxSize;
+
+    @Value("${storage.presigned.ttl:PT15M}")
+    private Duration ttl;
+
+    public UploadSlotResponse createSlot(UploadSlotRequest request) {
+        // Проверка до записи слота: иначе на локальном хранилище оставалась бы строка без загрузки
+        if (!objectStorage.supportsPresignedPut()) {
+            throw new DirectUploadNotSupportedException("Direct uploads are not supported by the configured storage");
+        }
+        String contentType = request.getContentType().toLowerCase();
+        String extension = ALLOWED_TYPES.get(contentType);
+        if (extension == null) {
+            throw new InvalidUploadException("Unsupported content type: " + request.getContentType());
+        }
+        if (request.getSize() > maxSize.toBytes()) {
+            throw new InvalidUploadException("File is larger than " + maxSize.toMegabytes() + "MB");
+        }
+
+        // Файлы лежат в корне бакета, как и загруженные через сервер
+        String key = UUID.randomUUID() + extension;
+        Instant expiresAt = Instant.now().plus(ttl);
+        String uploadUrl = objectStorage.presignPut(key, contentType, expiresAt);
+
+        UploadSlot slot = uploadSlotRepository.save(UploadSlot.builder()
+                .objectKey(key)
+                .ownerId(getCurrentUser().getId())
+                .contentType(contentType)
+                .sizeBytes(request.getSize())
+                .expiresAt(expiresAt)
+                .createdAt(Instant.now())
+                .build());
+
+        return UploadSlotResponse.builder()
+                .slotId(slot.getId())
+                .uploadUrl(uploadUrl)
+                .method("PUT")
+                .headers(Map.of("Content-Type", contentType))
+                .fileUrl(objectStorage.url(key))
+                .expiresAt(expiresAt)
+                .build();
+    }
+
+    /**
+     * Проверка загруженных объектов и привязка к цели.
+     * HEAD-запросы идут вне транзакции; слоты блокируются только на время записи.
+     */
+    public UploadConfirmResponse confirm(UploadConfirmRequest request) {
+        List<Long> slotIds = request.getSlotIds().stream().distinct().toList();
+        if (request.getTarget() == UploadConfirmRequest.Target.SHOP_LOGO && slotIds.size() != 1) {
+            throw new InvalidUploadException("Shop logo takes exactly one upload");
+        }
+
+        Long userId = getCurrentUser().getId();
+        List<UploadSlot> slots = uploadSlotRepository.findAllById(slotIds);
+        if (slots.size() != slotIds.size()) {
+            throw new ResourceNotFoundException("Upload slot not found");
+        }
+        for (UploadSlot slot : slots) {
+            if (!slot.getOwnerId().equals(userId)) {
+                throw new ResourceNotFoundException("Upload slot not found: " + slot.getId());
+            }
+            if (slot.getExpiresAt().isBefore(Instant.now())) {
+                throw new InvalidUploadException("Upload slot " + slot.getId() + " has expired");
+            }
+            verifyObject(slot);
+        }
+
+        List<String> urls = transactionTemplate.execute(status -> {
+            // Слот мог быть подтверждён параллельным запросом, пока шли HEAD
+            List<UploadSlot> locked = uploadSlotRepository.findAllForUpdate(slotIds);
+            if (locked.size() != slotIds.size()) {
+                throw new ResourceNotFoundException("Upload slot already used");
+            }
+            // URL в порядке slotIds - в этом порядке фото добавятся к товару
+            List<String> fileUrls = new ArrayList<>(slotIds.size());
+            for (Long slotId : slotIds) {
+                String key = locked.stream().filter(s -> s.getId().equals(slotId)).findFirst().orElseThrow().getObjectKey();
+                fileUrls.add(objectStorage.url(key));
+            }
+
+            switch (request.getTarget()) {
+                case ITEM_IMAGES -> itemService.addUploadedImages(request.getTargetId(), fileUrls);
+                case SHOP_LOGO -> shopService.replaceLogo(request.getTargetId(), fileUrls.get(0));
+            }
+            uploadSlotRepository.deleteAllInBatch(locked);
+            return fileUrls;
+        });
+
+        return UploadConfirmResponse.builder()
+                .target(request.getTarget())
+                .targetId(request.getTargetId())
+                .fileUrls(urls)
+                .build();
+    }
+
+    /**
+     * HEAD объекта: он должен существовать, совпадать по типу со слотом,
+     * а размер - с заявленным и не превышать лимит. Неподходящий объект удаляется вместе со слотом.
+     */
+    private void verifyObject(UploadSlot slot) {
+        ObjectStorage.ObjectInfo object = objectStorage.head(slot.getObjectKey())
+                .orElseThrow(() -> new InvalidUploadException("File for slot " + slot.getId() + " has not been uploaded"));
+
+        String error = null;
+        if (object.size() != slot.getSizeBytes() || object.size() > maxSize.toBytes()) {
+            error = "File size " + object.size() + " does not match the declared " + slot.getSizeBytes();
+        } else if (!slot.getContentType().equalsIgnoreCase(object.contentType())) {
+            error = "File type " + object.contentType() + " does not match the declared " + slot.getContentType();
+        }
+
+        if (error != null) {
+            transactionTemplate.executeWithoutResult(status -> {
+                storageDeletionService.enqueue(List.of(slot.getObjectKey()));
+                uploadSlotRepository.deleteById(slot.getId());
+            });
+            throw new InvalidUploadException(error);
+        }
+    }
+
+    /**
+     * Просроченные слоты: объект (если клиент успел его загрузить) - в очередь удаления
+     */
+    @Scheduled(initialDelayString = "${storage.presigned.cleanup-ms:600000}", fixedDelayString = "${storage.presigned.cleanup-ms:600000}")
+    public void expireSlots() {
+        try {
+            int expired;
+            do {
+                Integer count = transactionTemplate.execute(status -> {
+                    List<UploadSlot> slots = uploadSlotRepository.findByExpiresAtBefore(
+                            Instant.now(), PageRequest.of(0, EXPIRE_BATCH_SIZE));
+                    storageDeletionService.enqueue(slots.stream().map(UploadSlot::getObjectKey).toList());
+                    uploadSlotRepository.deleteAllInBatch(slots);
+                    return slots.size();
+                });
+                expired = count != null ? count : 0;
+                if (expired > 0) {
+                    log.info("Expired {} upload slots", expired);
+                }
+            } while (expired == EXPIRE_BATCH_SIZE);
+        } catch (Exception e) {
+            log.error("Failed to expire upload slots: {}", e.getMessage());
+        }
+    }
+
+    private User getCurrentUser() {
+        String email = SecurityContextHolder.getContext().getAuthentication().getName();
+        return userRepository.findByEmail(email)
+                .orElseThrow(() -> new ResourceNotFoundException("Authenticated user not found."));
+    }
+}
@@ -0,0 +1,53 @@
+package com.skrepta.skreptajava.item.service;
+
+import com.skrepta.skreptajava.auth.exception.InvalidCursorException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FeedCursorTest {
+
+    @Test
+    void roundTripKeepsNanosecondsAndId() {
+        FeedCursor cursor = new FeedCursor(Instant.parse("2024-03-01T12:34:56.123456789Z"), 987654321L);
+
+        String encoded = cursor.encode();
+
+        assertThat(encoded).doesNotContain("=", "+", "/");
+        assertThat(FeedCursor.decode(encoded)).isEqualTo(cursor);
+    }
+
+    @Test
+    void roundTripBeforeEpoch() {
+        FeedCursor cursor = new FeedCursor(Instant.parse("1969-12-31T23:59:59.5Z"), 1L);
+
+        assertThat(FeedCursor.decode(cursor.encode())).isEqualTo(cursor);
+    }
+
+    @Test
+    void tamperedCursorsAreRejected() {
+        String valid = new FeedCursor(Instant.parse("2024-03-01T00:00:00Z"), 5L).encode();
+
+        assertRejected("not base64 !");
+        assertRejected(valid + "*");
+        assertRejected(encode("1709251200:0"));          // нет id
+        assertRejected(encode("1709251200:0:abc"));      // id не число
+        assertRejected(encode("x:0:5"));                 // время не число
+        assertRejected("");
+    }
+
+    private static void assertRejected(String cursor) {
+        assertThatThrownBy(() -> FeedCursor.decode(cursor))
+                .isInstanceOf(InvalidCursorException.class)
+                .hasMessageContaining("Invalid feed cursor");
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
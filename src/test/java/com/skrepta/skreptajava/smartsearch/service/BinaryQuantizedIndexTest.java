@@ -0,0 +1,95 @@
+package com.skrepta.skreptajava.smartsearch.service;
+
+import com.pgvector.PGvector;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BinaryQuantizedIndexTest {
+
+    private static final int DIMENSIONS = 128;
+
+    @Test
+    void textQuantizationMatchesFloatQuantizationOnEdgeValues() {
+        float[] vector = {-0.0f, 0.0f, 1e-05f, 5e-06f, -1e-05f, -5e-06f, 0.5f, -0.25f, 3f, 0.0001f};
+        String text = "[-0.0,0.0,1e-05,5e-06,-1e-05,-5e-06,0.5,-0.25,3,0.0001]";
+
+        assertThat(BinaryQuantizedIndex.quantize(text)).containsExactly(BinaryQuantizedIndex.quantize(vector));
+        // знак есть только у строго положительных компонент
+        long positive = (1L << 2) | (1L << 3) | (1L << 6) | (1L << 8) | (1L << 9);
+        assertThat(BinaryQuantizedIndex.quantize(vector)).containsExactly(positive);
+    }
+
+    @Test
+    void textQuantizationMatchesFloatQuantizationOnPgvectorText() {
+        Random random = new Random(7);
+        float[] vector = randomVector(random, 1536);
+        vector[0] = -0.0f;
+        vector[1] = 0.0f;
+        vector[2] = 1e-05f;
+        vector[3] = 5e-06f;
+
+        String text = new PGvector(vector).toString();
+
+        assertThat(BinaryQuantizedIndex.quantize(text)).containsExactly(BinaryQuantizedIndex.quantize(vector));
+    }
+
+    @Test
+    void mergeAppliesUpdatesAndRemovals() {
+        BinaryQuantizedIndex index = new BinaryQuantizedIndex(null);
+        Random random = new Random(11);
+        float[][] vectors = new float[6][];
+        for (int id = 1; id <= 5; id++) {
+            vectors[id] = randomVector(random, DIMENSIONS);
+            index.update((long) id, new PGvector(vectors[id]));
+        }
+        index.applyPending();
+
+        assertThat(index.getStats().vectors()).isEqualTo(5);
+        assertThat(index.candidates(new PGvector(vectors[1]), 10)).containsExactlyInAnyOrder(1L, 2L, 3L, 4L, 5L);
+        assertThat(index.candidates(new PGvector(vectors[4]), 1)).containsExactly(4L);
+
+        float[] moved = randomVector(random, DIMENSIONS);
+        index.remove(2L);
+        index.update(3L, new PGvector(moved));
+        index.remove(42L); // отсутствующий ID ничего не ломает
+        index.applyPending();
+
+        assertThat(index.getStats().vectors()).isEqualTo(4);
+        assertThat(index.candidates(new PGvector(vectors[1]), 10)).containsExactlyInAnyOrder(1L, 3L, 4L, 5L);
+        assertThat(index.candidates(new PGvector(moved), 1)).containsExactly(3L);
+    }
+
+    @Test
+    void removingEverythingLeavesEmptyIndex() {
+        BinaryQuantizedIndex index = new BinaryQuantizedIndex(null);
+        float[] vector = randomVector(new Random(3), DIMENSIONS);
+        index.update(1L, new PGvector(vector));
+        index.applyPending();
+
+        index.remove(1L);
+        index.applyPending();
+
+        assertThat(index.getStats().vectors()).isZero();
+        assertThat(index.candidates(new PGvector(vector), 5)).isEmpty();
+    }
+
+    @Test
+    void queryOfOtherDimensionFindsNothing() {
+        BinaryQuantizedIndex index = new BinaryQuantizedIndex(null);
+        index.update(1L, new PGvector(randomVector(new Random(5), DIMENSIONS)));
+        index.applyPending();
+
+        assertThat(index.candidates(new PGvector(randomVector(new Random(6), DIMENSIONS * 2)), 5)).isEmpty();
+    }
+
+    private static float[] randomVector(Random random, int dimensions) {
+        float[] vector = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,51 @@
+package com.skrepta.skreptajava.smartsearch.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QueryNormalizerTest {
+
+    @Test
+    void foldLowercasesAndCollapsesPunctuation() {
+        assertThat(QueryNormalizer.fold("  Подарок,  ДЛЯ мамы!! ")).isEqualTo("подарок для мамы");
+        assertThat(QueryNormalizer.fold("серьги-гвоздики/золото")).isEqualTo("серьги гвоздики золото");
+    }
+
+    @Test
+    void foldReplacesYo() {
+        assertThat(QueryNormalizer.fold("Ёлочные ИГРУШКИ ёж")).isEqualTo("елочные игрушки еж");
+    }
+
+    @Test
+    void foldAppliesNfkc() {
+        // полноширинные символы и лигатура приводятся к обычным
+        assertThat(QueryNormalizer.fold("ＡＢＣ １２３ ﬁne")).isEqualTo("abc 123 fine");
+    }
+
+    @Test
+    void foldHandlesEmptyInput() {
+        assertThat(QueryNormalizer.fold(null)).isEmpty();
+        assertThat(QueryNormalizer.fold(" ,.!? ")).isEmpty();
+    }
+
+    @Test
+    void normalizeKeepsCatalogueWordsAndFixesTypos() {
+        QueryNormalizer normalizer = new QueryNormalizer(true);
+        normalizer.updateDictionary(Map.of("подарок", 10L, "мама", 4L, "браслет", 3L));
+
+        assertThat(normalizer.normalize("Подарак маме")).isEqualTo("подарок маме");
+        assertThat(normalizer.normalize("podarok")).isEqualTo("подарок");
+        assertThat(normalizer.normalize("браслет 2024")).isEqualTo("браслет 2024");
+    }
+
+    @Test
+    void normalizeWithoutSpellCorrectionOnlyFolds() {
+        QueryNormalizer normalizer = new QueryNormalizer(false);
+        normalizer.updateDictionary(Map.of("подарок", 10L));
+
+        assertThat(normalizer.normalize("Подарак!")).isEqualTo("подарак");
+    }
+}
@@ -0,0 +1,64 @@
+package com.skrepta.skreptajava.smartsearch.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SpellDictionaryTest {
+
+    private final SpellDictionary dictionary = SpellDictionary.build(Map.of(
+            "подарок", 10L,
+            "подарки", 3L,
+            "браслет", 7L,
+            "серьги", 5L,
+            "кот", 1L
+    ), 5);
+
+    @Test
+    void correctsSingleEdit() {
+        assertThat(dictionary.correct("подарак")).isEqualTo("подарок"); // замена
+        assertThat(dictionary.correct("подаро")).isEqualTo("подарок");  // пропуск буквы
+        assertThat(dictionary.correct("подарокк")).isEqualTo("подарок"); // лишняя буква
+        assertThat(dictionary.correct("брасльет")).isEqualTo("браслет");
+        assertThat(dictionary.correct("барслет")).isEqualTo("браслет"); // перестановка соседних
+    }
+
+    @Test
+    void prefersMoreFrequentWordAtSameDistance() {
+        SpellDictionary ambiguous = SpellDictionary.build(Map.of("набор", 2L, "набок", 9L), 5);
+
+        // "набог" в одной замене и от "набор", и от "набок"
+        assertThat(ambiguous.correct("набог")).isEqualTo("набок");
+        assertThat(ambiguous.correct("наборр")).isEqualTo("набор");
+    }
+
+    @Test
+    void doesNotCorrectBeyondOneEdit() {
+        assertThat(dictionary.correct("падарак")).isNull();
+        assertThat(dictionary.correct("браслеты и")).isNull();
+        assertThat(dictionary.correct("сумка")).isNull();
+    }
+
+    @Test
+    void shortWordsDoNotTakePartInCorrection() {
+        assertThat(dictionary.correct("кит")).isNull();
+    }
+
+    @Test
+    void exactMatchesAcrossAlphabets() {
+        assertThat(dictionary.exact("podarok")).isEqualTo("подарок");
+        assertThat(dictionary.exact("подарок")).isEqualTo("подарок");
+        assertThat(dictionary.contains("подарок")).isTrue();
+        assertThat(dictionary.contains("podarok")).isFalse();
+    }
+
+    @Test
+    void emptyDictionaryFindsNothing() {
+        SpellDictionary empty = SpellDictionary.empty();
+        assertThat(empty.size()).isZero();
+        assertThat(empty.correct("подарак")).isNull();
+        assertThat(empty.exact("подарок")).isNull();
+    }
+}
@@ -0,0 +1,143 @@
+package com.skrepta.skreptajava.smartsearch.service;
+
+import com.skrepta.skreptajava.smartsearch.service.SuggestionIndex.Suggestion;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SuggestionIndexTest {
+
+    private static final int TOP_K = 10;
+
+    private static final String[] WORDS = {
+            "подарок", "подарочный", "под", "подушка", "мама", "мамы", "для", "набор", "наборы", "нож"
+    };
+
+    @Test
+    void lookupReturnsTopByWeightForPrefix() {
+        Suggestion low = item(1, "подарок", 1);
+        Suggestion high = item(2, "подарочный набор", 50);
+        Suggestion other = item(3, "набор ножей", 10);
+        SuggestionIndex index = SuggestionIndex.build(List.of(low, high, other), TOP_K);
+
+        assertThat(index.lookup("пода", 10)).containsExactly(high, low);
+        assertThat(index.lookup("нАб", 10)).containsExactly(high, other);
+        assertThat(index.lookup("подарок", 10)).containsExactly(low);
+        assertThat(index.lookup("подарки", 10)).isEmpty();
+        assertThat(index.lookup("", 10)).isEmpty();
+    }
+
+    @Test
+    void suggestionReachedByTwoTermsIsReturnedOnce() {
+        // термины "мама мама" и "мама" - одна подсказка приходит в узел "мама"
+        // и как его собственная, и из списка ребёнка " мама"
+        Suggestion twice = item(1, "мама мама", 5);
+        Suggestion other = item(2, "мамы", 1);
+        SuggestionIndex index = SuggestionIndex.build(List.of(twice, other), TOP_K);
+
+        assertThat(index.lookup("мам", 10)).containsExactly(twice, other);
+
+        SuggestionIndex incremental = SuggestionIndex.empty().with(List.of(), List.of(twice, other), TOP_K);
+        assertThat(incremental.lookup("мам", 10)).containsExactly(twice, other);
+    }
+
+    @Test
+    void topKKeepsOnlyBestSuggestions() {
+        List<Suggestion> suggestions = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            suggestions.add(item(i, "товар " + i, i));
+        }
+        SuggestionIndex index = SuggestionIndex.build(suggestions, 3);
+
+        assertThat(index.lookup("тов", 10)).extracting(Suggestion::weight).containsExactly(19L, 18L, 17L);
+    }
+
+    @Test
+    void withSplitsEdgesAndLeavesOldSnapshotUntouched() {
+        Suggestion podarok = item(1, "подарок", 10);
+        SuggestionIndex before = SuggestionIndex.build(List.of(podarok), TOP_K);
+
+        // "подушка" расходится посреди ребра "подарок", "под" заканчивается на разделе
+        Suggestion podushka = item(2, "подушка", 20);
+        Suggestion pod = item(3, "под", 5);
+        SuggestionIndex after = before.with(List.of(), List.of(podushka, pod), TOP_K);
+
+        assertThat(after.lookup("под", 10)).containsExactly(podushka, podarok, pod);
+        assertThat(after.lookup("пода", 10)).containsExactly(podarok);
+        assertThat(after.size()).isEqualTo(3);
+        assertThat(before.lookup("под", 10)).containsExactly(podarok);
+        assertThat(before.size()).isEqualTo(1);
+    }
+
+    @Test
+    void withRemovesAndCompactsBackToSingleTerm() {
+        Suggestion podarok = item(1, "подарок", 10);
+        Suggestion podushka = item(2, "подушка", 20);
+        SuggestionIndex both = SuggestionIndex.build(List.of(podarok, podushka), TOP_K);
+
+        SuggestionIndex after = both.with(List.of(podushka), List.of(), TOP_K);
+
+        assertThat(after.lookup("под", 10)).containsExactly(podarok);
+        assertThat(after.lookup("подуш", 10)).isEmpty();
+        assertThat(both.lookup("под", 10)).containsExactly(podushka, podarok);
+    }
+
+    @Test
+    void removeComparesByReference() {
+        Suggestion indexed = item(1, "подарок", 10);
+        SuggestionIndex index = SuggestionIndex.build(List.of(indexed), TOP_K);
+
+        SuggestionIndex after = index.with(List.of(item(1, "подарок", 10)), List.of(), TOP_K);
+
+        assertThat(after.lookup("под", 10)).containsExactly(indexed);
+    }
+
+    @Test
+    void incrementalChangesMatchFullBuild() {
+        Random random = new Random(42);
+        List<Suggestion> live = new ArrayList<>();
+        SuggestionIndex index = SuggestionIndex.empty();
+
+        for (int step = 0; step < 300; step++) {
+            List<Suggestion> removed = new ArrayList<>();
+            List<Suggestion> added = new ArrayList<>();
+            if (!live.isEmpty() && random.nextInt(3) == 0) {
+                removed.add(live.remove(random.nextInt(live.size())));
+            }
+            Suggestion suggestion = item(step, randomText(random), random.nextInt(100));
+            added.add(suggestion);
+            live.add(suggestion);
+            index = index.with(removed, added, TOP_K);
+        }
+
+        SuggestionIndex rebuilt = SuggestionIndex.build(live, TOP_K);
+        for (String word : WORDS) {
+            for (int length = 1; length <= word.length(); length++) {
+                String prefix = word.substring(0, length);
+                assertThat(index.lookup(prefix, TOP_K))
+                        .as(prefix)
+                        .extracting(Suggestion::weight)
+                        .containsExactlyElementsOf(rebuilt.lookup(prefix, TOP_K).stream().map(Suggestion::weight).toList());
+            }
+        }
+        assertThat(index.size()).isEqualTo(live.size());
+    }
+
+    private static String randomText(Random random) {
+        int words = 1 + random.nextInt(3);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) text.append(' ');
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+
+    private static Suggestion item(long id, String text, long weight) {
+        return new Suggestion("ITEM", id, text, weight);
+    }
+}